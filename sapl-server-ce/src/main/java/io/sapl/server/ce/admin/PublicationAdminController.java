@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.admin;
+
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.context.annotation.Conditional;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.sapl.server.ce.model.sapldocument.PublishedDocumentNameCollisionException;
+import io.sapl.server.ce.model.sapldocument.SaplDocumentService;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Administrative API for managing the publication of SAPL documents. Requires
+ * the ADMIN role.
+ */
+@Slf4j
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(PublicationAdminController.PATH)
+@Conditional(SetupFinishedCondition.class)
+public class PublicationAdminController {
+
+    public static final String PATH = "/api/admin/publications";
+
+    private final SaplDocumentService saplDocumentService;
+
+    /**
+     * Batch of publication changes.
+     *
+     * @param publish   the versions to publish by the ids of the SAPL documents
+     * @param unpublish the ids of the SAPL documents to unpublish
+     */
+    public record PublicationBatch(Map<Long, Integer> publish, List<Long> unpublish) {}
+
+    /**
+     * Publishes and unpublishes the SAPL documents of a batch in a single
+     * transaction. The PDP is updated once for the whole batch.
+     *
+     * @param batch the changes to apply
+     * @return no content if the changes are applied
+     */
+    @PostMapping
+    public ResponseEntity<Void> applyBatch(@RequestBody PublicationBatch batch) {
+        var publish   = batch.publish() == null ? Map.<Long, Integer>of() : batch.publish();
+        var unpublish = batch.unpublish() == null ? List.<Long>of() : batch.unpublish();
+        try {
+            saplDocumentService.publishAndUnpublishPolicies(publish, unpublish);
+        } catch (PublishedDocumentNameCollisionException ex) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, ex.getMessage(), ex);
+        } catch (IllegalArgumentException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, ex.getMessage(), ex);
+        }
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Offers CBOR and Smile as binary alternatives to JSON for the PDP API. The
+ * encoding is negotiated by the {@code Content-Type} and {@code Accept}
+ * headers of HTTP requests and by the data MIME type of RSocket connections.
+ * JSON remains the default, as the binary converters are appended after the
+ * JSON converter.
+ * <p>
+ * Spring registers binary converters by default as soon as the Jackson data
+ * formats are on the class path. These are removed, so the binary encodings
+ * are only accepted if enabled, and then registered exactly once.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+public class BinaryEncodingConfiguration implements WebMvcConfigurer {
+
+    /**
+     * MIME type of Smile, as used by the Jackson codecs of Spring.
+     */
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    @Value("${io.sapl.server.binaryEncoding.enabled:#{false}}")
+    private boolean binaryEncoding;
+
+    private final Jackson2ObjectMapperBuilder objectMapperBuilder;
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+        if (binaryEncoding) {
+            log.info("accepting CBOR and Smile encoded requests to the HTTP API");
+            converters.add(new MappingJackson2CborHttpMessageConverter(cborMapper(objectMapperBuilder)));
+            converters.add(new MappingJackson2SmileHttpMessageConverter(smileMapper(objectMapperBuilder)));
+        }
+    }
+
+    /**
+     * @param builder the builder configured by Spring Boot
+     * @return a mapper for CBOR with the configuration of the JSON mapper
+     */
+    public static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).factory(new CBORFactory()).build();
+    }
+
+    /**
+     * @param builder the builder configured by Spring Boot
+     * @return a mapper for Smile with the configuration of the JSON mapper
+     */
+    public static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.createXmlMapper(false).factory(new SmileFactory()).build();
+    }
+}
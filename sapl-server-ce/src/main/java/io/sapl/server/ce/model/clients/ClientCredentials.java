@@ -70,6 +70,13 @@ public class ClientCredentials {
     @Column(length = 512, name = "clientEncodedSecret")
     private String encodedSecret;
 
+    /**
+     * The maximum number of requests per rate limiting period, or null to apply
+     * the default quota.
+     */
+    @Column(name = "rateLimit")
+    private Integer rateLimit;
+
     public ClientCredentials(String key, AuthType authType, String encodedSecret) {
         this.key           = key;
         this.authType      = authType;
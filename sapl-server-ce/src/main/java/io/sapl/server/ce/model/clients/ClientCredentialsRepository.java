@@ -21,9 +21,11 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import lombok.NonNull;
 
@@ -45,4 +47,32 @@ public interface ClientCredentialsRepository extends CrudRepository<ClientCreden
      */
     @Query(value = "SELECT c FROM ClientCredentials c WHERE c.key = :key")
     Optional<ClientCredentials> findByKey(@Param(value = "key") String key);
+
+    /**
+     * Replaces the encoded secret of the {@link ClientCredentials} with a specific
+     * key, if it has not been changed or deleted in the meantime.
+     *
+     * @param key                  of the credentials
+     * @param encodedSecret        the current encoded secret
+     * @param updatedEncodedSecret the new encoded secret
+     * @return the number of updated credentials
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE ClientCredentials c SET c.encodedSecret = :updatedEncodedSecret WHERE c.key = :key AND c.encodedSecret = :encodedSecret")
+    int updateEncodedSecret(@Param(value = "key") String key, @Param(value = "encodedSecret") String encodedSecret,
+            @Param(value = "updatedEncodedSecret") String updatedEncodedSecret);
+
+    /**
+     * Sets the rate limit of the {@link ClientCredentials} with a specific key
+     * without changing their other columns.
+     *
+     * @param key       of the credentials
+     * @param rateLimit the rate limit, or null for the default quota
+     * @return the number of updated credentials
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE ClientCredentials c SET c.rateLimit = :rateLimit WHERE c.key = :key")
+    int updateRateLimit(@Param(value = "key") String key, @Param(value = "rateLimit") Integer rateLimit);
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.cluster;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Entry of the change log used to propagate PDP configuration changes between
+ * instances sharing a database.
+ */
+@Getter
+@Setter
+@Entity
+@ToString
+@NoArgsConstructor
+@Accessors(chain = true)
+@Table(name = "ConfigurationChange")
+public class ConfigurationChange {
+
+    /**
+     * The revision of the change. An identity column is used to ensure a
+     * monotonically increasing revision across all instances.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "revision", nullable = false)
+    private Long revision;
+
+    /**
+     * The kind of the change.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "changeType", length = 50, nullable = false)
+    private ConfigurationChangeType type;
+
+    /**
+     * The name of the changed document or variable.
+     */
+    @Column(name = "subject", length = 250)
+    private String subject;
+
+    /**
+     * The identifier of the instance which made the change.
+     */
+    @Column(name = "origin", length = 50, nullable = false)
+    private String origin;
+
+    /**
+     * The time of the change in milliseconds since the epoch.
+     */
+    @Column(name = "timestamp", nullable = false)
+    private Long timestamp;
+}
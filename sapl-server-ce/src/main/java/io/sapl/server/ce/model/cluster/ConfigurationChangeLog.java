@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.cluster;
+
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Service;
+
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Records changes of the PDP configuration and revoked client credentials in
+ * the shared database, so that other instances can apply them to their PDP and
+ * authentication caches (see {@link ConfigurationChangePoller}).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+public class ConfigurationChangeLog {
+
+    private final ConfigurationChangeRepository configurationChangeRepository;
+
+    @Value("${io.sapl.server.cluster.enabled:#{false}}")
+    private boolean clusterEnabled;
+
+    /**
+     * Unique identifier of this instance, used to skip own changes.
+     */
+    @Getter
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Records a change. Does nothing if running in a cluster is not enabled.
+     *
+     * @param type    the kind of the change
+     * @param subject the name of the changed document or variable or the key of
+     *                the revoked client
+     */
+    public void record(@NonNull ConfigurationChangeType type, String subject) {
+        if (!clusterEnabled) {
+            return;
+        }
+
+        var change = new ConfigurationChange().setType(type).setSubject(subject).setOrigin(instanceId)
+                .setTimestamp(System.currentTimeMillis());
+        configurationChangeRepository.save(change);
+        log.debug("recorded configuration change: {}", change);
+    }
+}
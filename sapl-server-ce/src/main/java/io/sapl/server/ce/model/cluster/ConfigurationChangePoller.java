@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.cluster;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.sapl.server.ce.model.pdpconfiguration.CombiningAlgorithmService;
+import io.sapl.server.ce.model.pdpconfiguration.VariablesService;
+import io.sapl.server.ce.model.sapldocument.SaplDocumentService;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import io.sapl.server.ce.security.ClientDetailsService;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Polls the change log in the shared database and applies the changes made by
+ * other instances to the PDP of this instance. Only the changed documents and
+ * variables are reloaded. Cached verifications of client credentials revoked on
+ * other instances are evicted.
+ * <p>
+ * Revisions are assigned on insert, but transactions may commit out of order.
+ * Thus, changes are read again until they are older than the configured gap
+ * timeout, and already applied revisions are skipped.
+ * <p>
+ * The timestamps of the changes are taken from the clock of the recording
+ * instance and compared with the clock of the polling instance. The clocks of
+ * all instances are assumed to be synchronized, e.g., by NTP, with a skew well
+ * below the gap timeout. A larger skew may cause a late committed change to be
+ * skipped.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+@ConditionalOnProperty(name = "io.sapl.server.cluster.enabled", havingValue = "true")
+public class ConfigurationChangePoller {
+
+    private final ConfigurationChangeRepository configurationChangeRepository;
+    private final ConfigurationChangeLog        configurationChangeLog;
+    private final SaplDocumentService           saplDocumentService;
+    private final VariablesService              variablesService;
+    private final CombiningAlgorithmService     combiningAlgorithmService;
+    private final ClientDetailsService          clientDetailsService;
+
+    @Value("${io.sapl.server.cluster.gap-timeout:#{10}}")
+    private Integer gapTimeoutSeconds;
+
+    @Value("${io.sapl.server.cluster.retention:#{3600}}")
+    private Integer retentionSeconds;
+
+    private final Set<Long> appliedRevisions = new HashSet<>();
+    private long            watermark;
+
+    @PostConstruct
+    void init() {
+        // the services loaded the current state on startup, only recent changes may
+        // be missing
+        watermark = configurationChangeRepository.findLatestRevisionOlderThan(gapLimit());
+        log.info("polling configuration changes of other instances (instance: {}, revision: {})",
+                configurationChangeLog.getInstanceId(), watermark);
+    }
+
+    /**
+     * Applies the changes recorded since the last poll. The applied revisions and
+     * the watermark are only updated after all changes have been applied. If
+     * reloading a document or variable fails, the same changes are applied again
+     * on the next poll.
+     */
+    @Scheduled(fixedDelayString = "${io.sapl.server.cluster.poll-interval:#{1000}}")
+    public synchronized void poll() {
+        var changes                   = configurationChangeRepository.findNewerThan(watermark);
+        var gapLimit                  = gapLimit();
+        var newWatermark              = watermark;
+        var newRevisions              = new HashSet<Long>();
+        var documents                 = new HashSet<String>();
+        var variables                 = new HashSet<String>();
+        var revokedClients            = new HashSet<String>();
+        var rateLimitedClients        = new HashSet<String>();
+        var combiningAlgorithmChanged = false;
+
+        for (var change : changes) {
+            var revision = change.getRevision();
+            if (change.getTimestamp() < gapLimit && revision > newWatermark) {
+                newWatermark = revision;
+            }
+            if (appliedRevisions.contains(revision) || !newRevisions.add(revision)
+                    || configurationChangeLog.getInstanceId().equals(change.getOrigin())) {
+                continue;
+            }
+
+            log.debug("applying configuration change of other instance: {}", change);
+            switch (change.getType()) {
+            case PUBLISHED_DOCUMENT -> documents.add(change.getSubject());
+            case VARIABLE -> variables.add(change.getSubject());
+            case COMBINING_ALGORITHM -> combiningAlgorithmChanged = true;
+            case CLIENT_CREDENTIALS -> revokedClients.add(change.getSubject());
+            case RATE_LIMIT -> rateLimitedClients.add(change.getSubject());
+            }
+        }
+
+        try {
+            // revocations are applied first, so they do not depend on the reloading
+            revokedClients.forEach(clientDetailsService::evictCachedCredentials);
+            rateLimitedClients.forEach(clientDetailsService::evictRateLimit);
+            if (!documents.isEmpty()) {
+                saplDocumentService.refreshPublishedDocuments(documents);
+            }
+            if (!variables.isEmpty()) {
+                variablesService.refreshVariables(variables);
+            }
+            if (combiningAlgorithmChanged) {
+                combiningAlgorithmService.refresh();
+            }
+        } catch (RuntimeException e) {
+            log.warn("failed to apply configuration changes of other instances, retrying on next poll", e);
+            return;
+        }
+
+        appliedRevisions.addAll(newRevisions);
+        watermark = newWatermark;
+        appliedRevisions.removeIf(revision -> revision <= watermark);
+    }
+
+    @Scheduled(fixedDelayString = "${io.sapl.server.cluster.cleanup-interval:#{60000}}")
+    public void cleanup() {
+        configurationChangeRepository.deleteOlderThan(System.currentTimeMillis() - retentionSeconds * 1000L);
+    }
+
+    private long gapLimit() {
+        return System.currentTimeMillis() - gapTimeoutSeconds * 1000L;
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.cluster;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface ConfigurationChangeRepository extends CrudRepository<ConfigurationChange, Long>, Serializable {
+    /**
+     * Gets the changes with a revision greater than the given one.
+     *
+     * @param revision the revision
+     * @return the changes ordered by revision
+     */
+    @Query(value = "SELECT c FROM ConfigurationChange c WHERE c.revision > :revision ORDER BY c.revision")
+    List<ConfigurationChange> findNewerThan(@Param(value = "revision") long revision);
+
+    /**
+     * Gets the greatest revision of the changes older than the given time.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     * @return the greatest revision or 0 if no such change is recorded
+     */
+    @Query(value = "SELECT COALESCE(MAX(c.revision), 0) FROM ConfigurationChange c WHERE c.timestamp < :timestamp")
+    long findLatestRevisionOlderThan(@Param(value = "timestamp") long timestamp);
+
+    /**
+     * Deletes the changes older than the given time.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM ConfigurationChange c WHERE c.timestamp < :timestamp")
+    void deleteOlderThan(@Param(value = "timestamp") long timestamp);
+}
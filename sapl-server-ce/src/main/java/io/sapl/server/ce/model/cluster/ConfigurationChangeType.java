@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.cluster;
+
+/**
+ * Kinds of PDP configuration and client credential changes propagated between
+ * instances sharing a database.
+ */
+public enum ConfigurationChangeType {
+    /**
+     * A SAPL document has been published or unpublished. The subject is the name
+     * of the document.
+     */
+    PUBLISHED_DOCUMENT,
+    /**
+     * A variable has been created, changed or deleted. The subject is the name of
+     * the variable.
+     */
+    VARIABLE,
+    /**
+     * The combining algorithm has been changed.
+     */
+    COMBINING_ALGORITHM,
+    /**
+     * Client credentials have been deleted. Cached verifications of the
+     * credentials must be evicted. The subject is the client key.
+     */
+    CLIENT_CREDENTIALS,
+    /**
+     * The rate limit of a client has been changed. The cached quota of the client
+     * must be evicted. The subject is the client key.
+     */
+    RATE_LIMIT
+}
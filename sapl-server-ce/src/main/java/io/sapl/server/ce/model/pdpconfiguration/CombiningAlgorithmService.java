@@ -25,6 +25,8 @@ import org.springframework.stereotype.Service;
 import com.google.common.collect.Iterables;
 
 import io.sapl.interpreter.combinators.PolicyDocumentCombiningAlgorithm;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeLog;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeType;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
 import io.sapl.server.ce.pdp.PDPConfigurationPublisher;
 import jakarta.annotation.PostConstruct;
@@ -44,6 +46,7 @@ public class CombiningAlgorithmService {
 
     private final SelectedCombiningAlgorithmRepository selectedCombiningAlgorithmRepository;
     private final PDPConfigurationPublisher            pdpConfigurationPublisher;
+    private final ConfigurationChangeLog               configurationChangeLog;
 
     @PostConstruct
     public void init() {
@@ -84,8 +87,17 @@ public class CombiningAlgorithmService {
     public void setSelected(@NonNull PolicyDocumentCombiningAlgorithm combiningAlgorithm) {
         selectedCombiningAlgorithmRepository.deleteAll();
         selectedCombiningAlgorithmRepository.save(new SelectedCombiningAlgorithm(combiningAlgorithm));
+        configurationChangeLog.record(ConfigurationChangeType.COMBINING_ALGORITHM, combiningAlgorithm.name());
         pdpConfigurationPublisher.publishCombiningAlgorithm(combiningAlgorithm);
 
         log.info("set policy document combining algorithm: {}", combiningAlgorithm);
     }
+
+    /**
+     * Reloads the selected combining algorithm from the database and publishes it.
+     * Used to apply changes made by other instances sharing the database.
+     */
+    public void refresh() {
+        pdpConfigurationPublisher.publishCombiningAlgorithm(getSelected());
+    }
 }
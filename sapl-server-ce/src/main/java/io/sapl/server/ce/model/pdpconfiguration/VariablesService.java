@@ -17,7 +17,9 @@
  */
 package io.sapl.server.ce.model.pdpconfiguration;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.context.annotation.Conditional;
@@ -27,8 +29,11 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.sapl.server.ce.model.cluster.ConfigurationChangeLog;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeType;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
 import io.sapl.server.ce.pdp.PDPConfigurationPublisher;
+import io.sapl.server.ce.pdp.VariablesUpdateEvent;
 import jakarta.annotation.PostConstruct;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -49,6 +54,7 @@ public class VariablesService {
 
     private final VariablesRepository       variableRepository;
     private final PDPConfigurationPublisher pdpConfigurationPublisher;
+    private final ConfigurationChangeLog    configurationChangeLog;
 
     @PostConstruct
     public void init() {
@@ -78,7 +84,8 @@ public class VariablesService {
 
         log.info("created variable {}: {}", name, jsonValue);
 
-        publishVariables();
+        configurationChangeLog.record(ConfigurationChangeType.VARIABLE, name);
+        pdpConfigurationPublisher.publishVariablesUpdate(VariablesUpdateEvent.publish(variable));
 
         return variable;
     }
@@ -107,7 +114,13 @@ public class VariablesService {
 
         log.info("edited variable: {} -> {}", oldVariable, editedVariable);
 
-        publishVariables();
+        var withdrawnNames = oldVariable.getName().equals(name) ? List.<String>of() : List.of(oldVariable.getName());
+        configurationChangeLog.record(ConfigurationChangeType.VARIABLE, name);
+        for (var withdrawnName : withdrawnNames) {
+            configurationChangeLog.record(ConfigurationChangeType.VARIABLE, withdrawnName);
+        }
+        pdpConfigurationPublisher
+                .publishVariablesUpdate(new VariablesUpdateEvent(List.of(editedVariable), withdrawnNames));
 
         return editedVariable;
     }
@@ -120,7 +133,30 @@ public class VariablesService {
 
         variableRepository.deleteById(id);
         log.info("deleted variable {}: {}", variableToDelete.get().getName(), variableToDelete.get().getJsonValue());
-        publishVariables();
+        configurationChangeLog.record(ConfigurationChangeType.VARIABLE, variableToDelete.get().getName());
+        pdpConfigurationPublisher
+                .publishVariablesUpdate(VariablesUpdateEvent.withdraw(variableToDelete.get().getName()));
+    }
+
+    /**
+     * Reloads the variables with the given names from the database and publishes
+     * them. Used to apply changes made by other instances sharing the database.
+     *
+     * @param names the names of the changed variables
+     */
+    public void refreshVariables(@NonNull Collection<String> names) {
+        var published = new ArrayList<Variable>();
+        var withdrawn = new ArrayList<String>();
+        for (var name : names) {
+            var variablesWithName = variableRepository.findByName(name);
+            if (variablesWithName.isEmpty()) {
+                withdrawn.add(name);
+            } else {
+                published.addAll(variablesWithName);
+            }
+        }
+        log.info("refresh variables changed by other instance: {}", names);
+        pdpConfigurationPublisher.publishVariablesUpdate(new VariablesUpdateEvent(published, withdrawn));
     }
 
     private static void checkIsJsonValue(String jsonValue) throws InvalidJsonException {
@@ -162,9 +198,4 @@ public class VariablesService {
             throw new DuplicatedVariableNameException(name);
         }
     }
-
-    private void publishVariables() {
-        Collection<Variable> variables = getAll();
-        pdpConfigurationPublisher.publishVariables(variables);
-    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.ratelimit;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+/**
+ * Token bucket of a rate limit shared by all instances using the same database.
+ */
+@Getter
+@Setter
+@Entity
+@ToString
+@NoArgsConstructor
+@Accessors(chain = true)
+@Table(name = "RateLimitBucket")
+public class RateLimitBucket {
+
+    /**
+     * The key of the rate limited client.
+     */
+    @Id
+    @Column(name = "bucketKey", length = 250, nullable = false)
+    private String bucketKey;
+
+    /**
+     * The available tokens at the time of the last refill.
+     */
+    @Column(name = "tokens", nullable = false)
+    private Double tokens;
+
+    /**
+     * The time of the last refill in milliseconds since the epoch.
+     */
+    @Column(name = "lastRefill", nullable = false)
+    private Long lastRefill;
+
+    /**
+     * The time in milliseconds since the epoch at which the bucket is refilled
+     * completely. Buckets which are full may be deleted.
+     */
+    @Column(name = "fullAt", nullable = false)
+    private Long fullAt;
+}
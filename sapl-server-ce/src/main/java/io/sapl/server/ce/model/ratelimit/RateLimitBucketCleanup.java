@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.ratelimit;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Deletes token buckets which have been refilled completely, as they are
+ * equivalent to missing buckets. Only active if rate limiting is enabled.
+ */
+@Component
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+@ConditionalOnProperty(name = "io.sapl.server.rateLimiting.enabled", havingValue = "true")
+public class RateLimitBucketCleanup {
+
+    private final RateLimitBucketRepository rateLimitBucketRepository;
+
+    @Scheduled(fixedDelayString = "${io.sapl.server.rateLimiting.cleanup-interval:#{60000}}")
+    public void cleanup() {
+        rateLimitBucketRepository.deleteFullAt(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.ratelimit;
+
+import java.io.Serializable;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.persistence.LockModeType;
+
+public interface RateLimitBucketRepository extends CrudRepository<RateLimitBucket, String>, Serializable {
+    /**
+     * Gets a bucket and locks it until the end of the transaction.
+     *
+     * @param bucketKey the key of the bucket
+     * @return the bucket
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "SELECT b FROM RateLimitBucket b WHERE b.bucketKey = :bucketKey")
+    Optional<RateLimitBucket> findForUpdate(@Param(value = "bucketKey") String bucketKey);
+
+    /**
+     * Deletes the buckets which are full at the given time.
+     *
+     * @param timestamp the time in milliseconds since the epoch
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM RateLimitBucket b WHERE b.fullAt < :timestamp")
+    void deleteFullAt(@Param(value = "timestamp") long timestamp);
+}
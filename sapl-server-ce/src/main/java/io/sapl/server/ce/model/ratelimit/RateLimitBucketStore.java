@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.ratelimit;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import org.springframework.context.annotation.Conditional;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Stores token buckets in the shared database, so rate limits hold for all
+ * instances. Tokens are taken from a bucket within a transaction holding a row
+ * lock, which is supported by H2 and MariaDB alike.
+ */
+@Service
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+public class RateLimitBucketStore {
+
+    private final RateLimitBucketRepository rateLimitBucketRepository;
+    private final TransactionTemplate       transactionTemplate;
+    // the time in milliseconds since the epoch, replaced by tests
+    private LongSupplier                    clock = System::currentTimeMillis;
+
+    /**
+     * Takes tokens from a bucket, which is refilled greedily with capacity tokens
+     * per period.
+     *
+     * @param bucketKey the key of the bucket
+     * @param capacity  the capacity of the bucket
+     * @param period    the time to refill the bucket completely
+     * @param requested the number of requested tokens
+     * @return the number of tokens taken, which may be less than requested, or 0
+     *         if the bucket is empty or has no capacity
+     */
+    public long take(@NonNull String bucketKey, long capacity, @NonNull Duration period, long requested) {
+        if (capacity <= 0 || requested <= 0) {
+            return 0L;
+        }
+        try {
+            return takeInTransaction(bucketKey, capacity, period, requested);
+        } catch (DataIntegrityViolationException e) {
+            // the bucket has been created concurrently
+            return takeInTransaction(bucketKey, capacity, period, requested);
+        }
+    }
+
+    private long takeInTransaction(String bucketKey, long capacity, Duration period, long requested) {
+        var taken = transactionTemplate.execute(status -> {
+            var bucket = rateLimitBucketRepository.findForUpdate(bucketKey).orElse(null);
+            // the time is taken while holding the lock, and the time of the last
+            // refill never goes back, so concurrent takes and instances with lagging
+            // clocks do not refill the same period twice
+            var now    = clock.getAsLong();
+            if (bucket == null) {
+                bucket = new RateLimitBucket().setBucketKey(bucketKey).setTokens((double) capacity)
+                        .setLastRefill(now);
+            }
+            var refillPerMill = (double) capacity / Math.max(1L, period.toMillis());
+            var refillTime    = Math.max(now, bucket.getLastRefill());
+            var tokens        = Math.min(capacity,
+                    bucket.getTokens() + (refillTime - bucket.getLastRefill()) * refillPerMill);
+            var granted       = (long) Math.min(requested, Math.floor(tokens));
+            var remaining     = tokens - granted;
+
+            bucket.setTokens(remaining).setLastRefill(refillTime)
+                    .setFullAt(refillTime + (long) Math.ceil((capacity - remaining) / refillPerMill));
+            rateLimitBucketRepository.save(bucket);
+            return granted;
+        });
+        return taken == null ? 0L : taken;
+    }
+}
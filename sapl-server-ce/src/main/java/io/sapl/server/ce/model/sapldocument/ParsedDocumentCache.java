@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.sapldocument;
+
+import java.nio.charset.StandardCharsets;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.Hashing;
+
+import io.sapl.interpreter.SAPLInterpreter;
+import io.sapl.prp.Document;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import jakarta.annotation.PostConstruct;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Cache of parsed SAPL documents keyed by the SHA-256 hash of their content.
+ * Ensures that a document validated when creating a version is not parsed
+ * again when it is published or withdrawn, and that each distinct document is
+ * only parsed once on startup.
+ */
+@Component
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+public class ParsedDocumentCache {
+
+    private final SAPLInterpreter saplInterpreter;
+
+    @Value("${io.sapl.server.documentCache.maxSize:#{10000}}")
+    private Integer maxSize;
+
+    private Cache<String, Document> parsedDocuments;
+
+    @PostConstruct
+    void init() {
+        parsedDocuments = Caffeine.newBuilder().maximumSize(maxSize).build();
+    }
+
+    /**
+     * Gets the parsed document for a document content. The content is only parsed
+     * if it is not contained in the cache. Concurrent requests for the same
+     * content wait for a single parse, while different documents are still
+     * parsed concurrently.
+     *
+     * @param documentContent the content of the document
+     * @return the parsed document
+     */
+    public Document parse(@NonNull String documentContent) {
+        return parsedDocuments.get(hash(documentContent), key -> saplInterpreter.parseDocument(documentContent));
+    }
+
+    private static String hash(String documentContent) {
+        return Hashing.sha256().hashString(documentContent, StandardCharsets.UTF_8).toString();
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.sapldocument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.sapl.prp.Document;
+import io.sapl.prp.PrpUpdateEvent;
+import io.sapl.prp.PrpUpdateEvent.Update;
+import lombok.NonNull;
+
+/**
+ * Immutable snapshot of the currently published SAPL documents together with
+ * the changes leading from the previous snapshot to this one.
+ * <p>
+ * Only the latest snapshot is retained by {@link SaplDocumentService}, thus the
+ * memory consumption is bounded by the amount of published documents and does
+ * not grow with the amount of publish / unpublish operations.
+ *
+ * @param revision  the revision of the snapshot, incremented for each change
+ * @param documents the published documents by name
+ * @param withdrawn the documents withdrawn compared to the previous snapshot
+ * @param published the documents published compared to the previous snapshot
+ */
+record PublishedDocumentsSnapshot(long revision, Map<String, Document> documents, List<Document> withdrawn,
+        List<Document> published) {
+
+    static final PublishedDocumentsSnapshot EMPTY = new PublishedDocumentsSnapshot(0L, Map.of(), List.of(),
+            List.of());
+
+    /**
+     * Creates the successor of this snapshot.
+     *
+     * @param withdrawn the documents to withdraw
+     * @param published the documents to publish
+     * @return the new snapshot
+     */
+    PublishedDocumentsSnapshot apply(@NonNull Collection<Document> withdrawn, @NonNull Collection<Document> published) {
+        var newDocuments = new HashMap<>(documents);
+        for (var document : withdrawn) {
+            newDocuments.remove(document.name());
+        }
+        for (var document : published) {
+            newDocuments.put(document.name(), document);
+        }
+        return new PublishedDocumentsSnapshot(revision + 1, Map.copyOf(newDocuments), List.copyOf(withdrawn),
+                List.copyOf(published));
+    }
+
+    /**
+     * Creates an event publishing all documents of this snapshot.
+     *
+     * @return the event
+     */
+    PrpUpdateEvent toInitialEvent() {
+        return toEvent(List.of(), documents.values());
+    }
+
+    /**
+     * Creates an event transforming the state of a subscriber, which has seen the
+     * given snapshot before, to this snapshot. If the subscriber has seen the
+     * direct predecessor, only the recorded changes are sent. Otherwise, the
+     * difference between both snapshots is computed.
+     *
+     * @param previous the snapshot last seen by the subscriber
+     * @return the event
+     */
+    PrpUpdateEvent toEventSince(PublishedDocumentsSnapshot previous) {
+        if (previous == null) {
+            return toInitialEvent();
+        }
+        if (previous.revision() + 1 == revision) {
+            return toEvent(withdrawn, published);
+        }
+
+        var withdrawnSincePrevious = new ArrayList<Document>();
+        for (var previousDocument : previous.documents().values()) {
+            if (!previousDocument.equals(documents.get(previousDocument.name()))) {
+                withdrawnSincePrevious.add(previousDocument);
+            }
+        }
+        var publishedSincePrevious = new ArrayList<Document>();
+        for (var document : documents.values()) {
+            if (!document.equals(previous.documents().get(document.name()))) {
+                publishedSincePrevious.add(document);
+            }
+        }
+        return toEvent(withdrawnSincePrevious, publishedSincePrevious);
+    }
+
+    private static PrpUpdateEvent toEvent(Collection<Document> withdrawn, Collection<Document> published) {
+        var updates = new ArrayList<Update>(withdrawn.size() + published.size());
+        for (var document : withdrawn) {
+            updates.add(new Update(PrpUpdateEvent.Type.WITHDRAW, document));
+        }
+        for (var document : published) {
+            updates.add(new Update(PrpUpdateEvent.Type.PUBLISH, document));
+        }
+        return new PrpUpdateEvent(updates);
+    }
+}
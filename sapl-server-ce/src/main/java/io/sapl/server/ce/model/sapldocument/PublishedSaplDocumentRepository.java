@@ -20,6 +20,8 @@ package io.sapl.server.ce.model.sapldocument;
 import java.io.Serializable;
 import java.util.Collection;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
@@ -35,6 +37,15 @@ public interface PublishedSaplDocumentRepository extends CrudRepository<Publishe
     @NonNull
     Collection<PublishedSaplDocument> findAll();
 
+    /**
+     * Gets a page of the published documents. Used to load the published documents
+     * without holding all rows in memory.
+     *
+     * @param pageable the page to get
+     * @return the published documents of the page
+     */
+    Slice<PublishedSaplDocument> findAllBy(Pageable pageable);
+
     @Query(value = "SELECT s FROM PublishedSaplDocument s WHERE s.documentName = :documentName")
     Collection<PublishedSaplDocument> findByDocumentName(@Param(value = "documentName") String documentName);
 }
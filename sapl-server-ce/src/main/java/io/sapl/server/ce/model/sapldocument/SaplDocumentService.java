@@ -17,6 +17,7 @@
  */
 package io.sapl.server.ce.model.sapldocument;
 
+import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
@@ -25,21 +26,29 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.util.Streamable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import io.sapl.interpreter.DocumentType;
-import io.sapl.interpreter.SAPLInterpreter;
 import io.sapl.prp.Document;
 import io.sapl.prp.PrpUpdateEvent;
-import io.sapl.prp.PrpUpdateEvent.Update;
 import io.sapl.prp.PrpUpdateEventSource;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeLog;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeType;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import io.sapl.server.ce.pdp.PDPConfigurationChangedEvent;
 import jakarta.annotation.PostConstruct;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -62,23 +71,46 @@ public class SaplDocumentService implements PrpUpdateEventSource {
     private final SaplDocumentsRepository         saplDocumentRepository;
     private final SaplDocumentsVersionRepository  saplDocumentVersionRepository;
     private final PublishedSaplDocumentRepository publishedSaplDocumentRepository;
-    private final SAPLInterpreter                 saplInterpreter;
+    private final ParsedDocumentCache             parsedDocumentCache;
+    private final ConfigurationChangeLog          configurationChangeLog;
+    private final ApplicationEventPublisher       eventPublisher;
 
     private final DateTimeFormatter dateFormatter = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM)
             .withLocale(Locale.GERMANY).withZone(ZoneId.systemDefault());
 
-    private Many<PrpUpdateEvent> prpUpdateEventSink = Sinks.many().replay().all();
+    // only the latest snapshot is retained, new subscribers start from it
+    private final Many<PublishedDocumentsSnapshot> publishedDocumentsSink = Sinks.many().replay().latest();
+
+    private PublishedDocumentsSnapshot currentSnapshot = PublishedDocumentsSnapshot.EMPTY;
+
+    @Value("${io.sapl.server.documentLoading.parallel:#{false}}")
+    private boolean parallelDocumentLoading;
+
+    @Value("${io.sapl.server.documentLoading.pageSize:#{500}}")
+    private Integer documentLoadingPageSize;
 
     @PostConstruct
     public void init() {
-        // emit initial event
-        PrpUpdateEvent initialEvent = generateInitialPrpUpdateEvent();
-        prpUpdateEventSink.emitNext(initialEvent, EmitFailureHandler.FAIL_FAST);
+        // emit initial snapshot
+        long           start              = System.nanoTime();
+        List<Document> publishedDocuments = loadPublishedDocuments();
+        log.info("loaded {} published SAPL documents in {} ms (parallel: {})", publishedDocuments.size(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis(), parallelDocumentLoading);
+        emitChanges(List.of(), publishedDocuments);
     }
 
+    /**
+     * Each subscriber initially receives a single event publishing all currently
+     * published documents. Afterwards, it receives the changes relative to the
+     * last snapshot it has seen.
+     */
     @Override
     public Flux<PrpUpdateEvent> getUpdates() {
-        return prpUpdateEventSink.asFlux();
+        return Flux.defer(() -> {
+            var lastSeenSnapshot = new AtomicReference<PublishedDocumentsSnapshot>();
+            return publishedDocumentsSink.asFlux()
+                    .map(snapshot -> snapshot.toEventSince(lastSeenSnapshot.getAndSet(snapshot)));
+        });
     }
 
     @Override
@@ -101,7 +133,7 @@ public class SaplDocumentService implements PrpUpdateEventSource {
     public SaplDocument createDefault() {
         String documentValue = DEFAULT_DOCUMENT_VALUE;
 
-        Document documentAnalysisResult = saplInterpreter.parseDocument(documentValue);
+        Document documentAnalysisResult = parsedDocumentCache.parse(documentValue);
 
         DocumentType type = documentAnalysisResult.type();
         String       name = documentAnalysisResult.name();
@@ -120,7 +152,7 @@ public class SaplDocumentService implements PrpUpdateEventSource {
     public SaplDocumentVersion createVersion(long saplDocumentId, @NonNull String documentValue) {
         SaplDocument saplDocument = getExistingById(saplDocumentId);
 
-        Document documentAnalysisResult = saplInterpreter.parseDocument(documentValue);
+        Document documentAnalysisResult = parsedDocumentCache.parse(documentValue);
         if (documentAnalysisResult.isInvalid()) {
             throw new IllegalArgumentException(String.format("document value is invalid (value: %s)", documentValue));
         }
@@ -143,74 +175,86 @@ public class SaplDocumentService implements PrpUpdateEventSource {
     @Transactional(rollbackFor = Throwable.class)
     public void publishPolicyVersion(long saplDocumentId, int versionToPublish)
             throws PublishedDocumentNameCollisionException {
-        SaplDocument saplDocument = getExistingById(saplDocumentId);
-        var          updateEvents = new ArrayList<Update>(2);
-
-        // unpublish other version if published
-        if (saplDocument.getPublishedVersion() != null) {
-            SaplDocument saplDocumentToUnpublish = getExistingById(saplDocumentId);
+        var withdrawnDocuments = new ArrayList<Document>(1);
 
-            SaplDocumentVersion publishedVersion = saplDocumentToUnpublish.getPublishedVersion();
-            if (publishedVersion != null) {
+        PublishedSaplDocument createdPublishedSaplDocument = publishVersion(getExistingById(saplDocumentId),
+                versionToPublish, withdrawnDocuments);
+        enforceUniquePublishedDocumentNames(List.of(createdPublishedSaplDocument.getDocumentName()));
 
-                // update persisted published documents
-                Iterable<PublishedSaplDocument> deletedPublishedSaplDocuments = deletePersistedPublishedSaplDocumentsByName(
-                        publishedVersion.getName());
-                for (var doc : deletedPublishedSaplDocuments) {
-                    updateEvents.add(convertSaplDocumentToUpdateOfPrpUpdateEvent(doc, PrpUpdateEvent.Type.WITHDRAW));
-                }
+        emitChanges(withdrawnDocuments, List.of(parsePublishedSaplDocument(createdPublishedSaplDocument)));
+    }
 
-                // update persisted document
-                saplDocumentToUnpublish.setPublishedVersion(null);
-                saplDocumentRepository.save(saplDocumentToUnpublish);
+    @Transactional
+    public void unpublishPolicy(long saplDocumentId) {
+        var withdrawnDocuments = new ArrayList<Document>(1);
 
-                log.info("unpublish version {} of SAPL document with id {} (name: {})",
-                        publishedVersion.getVersionNumber(), saplDocumentId, saplDocumentToUnpublish.getName());
-            }
+        boolean isUnpublished = unpublishVersion(getExistingById(saplDocumentId), withdrawnDocuments);
+        if (!isUnpublished) {
+            return;
         }
 
-        SaplDocumentVersion saplDocumentVersionToPublish = saplDocument.getVersion(versionToPublish);
-
-        // update persisted published documents
-        PublishedSaplDocument createdPublishedSaplDocument = createPersistedPublishedSaplDocument(
-                saplDocumentVersionToPublish);
-
-        // update persisted document
-        saplDocument.setPublishedVersion(saplDocumentVersionToPublish).setLastModified(getCurrentTimestampAsString());
-        saplDocumentRepository.save(saplDocument);
-
-        log.info("publish version {} of SAPL document with id {} (name: {})",
-                saplDocumentVersionToPublish.getVersionNumber(), saplDocumentId,
-                saplDocumentVersionToPublish.getName());
-
-        updateEvents.add(
-                convertSaplDocumentToUpdateOfPrpUpdateEvent(createdPublishedSaplDocument, PrpUpdateEvent.Type.PUBLISH));
-
-        var prpUpdateEvent = new PrpUpdateEvent(updateEvents);
-        prpUpdateEventSink.emitNext(prpUpdateEvent, EmitFailureHandler.FAIL_FAST);
+        emitChanges(withdrawnDocuments, List.of());
     }
 
-    @Transactional
-    public void unpublishPolicy(long saplDocumentId) {
-        SaplDocument saplDocumentToUnpublish = getExistingById(saplDocumentId);
+    /**
+     * Publishes and unpublishes multiple SAPL documents in a single transaction.
+     * Exactly one {@link PrpUpdateEvent} containing all changes is emitted, so the
+     * PDP is only updated once for the whole batch. Documents are unpublished
+     * before the versions to publish are published.
+     *
+     * @param versionsToPublish    the versions to publish by the ids of the SAPL
+     *                             documents
+     * @param documentsToUnpublish the ids of the SAPL documents to unpublish
+     * @throws PublishedDocumentNameCollisionException thrown if a name of a
+     *                                                 document to publish is not
+     *                                                 unique, no change is applied
+     *                                                 in this case
+     */
+    @Transactional(rollbackFor = Throwable.class)
+    public void publishAndUnpublishPolicies(@NonNull Map<Long, Integer> versionsToPublish,
+            @NonNull Collection<Long> documentsToUnpublish) throws PublishedDocumentNameCollisionException {
+        var withdrawnDocuments = new ArrayList<Document>();
 
-        SaplDocumentVersion publishedVersion = saplDocumentToUnpublish.getPublishedVersion();
-        if (publishedVersion == null) {
-            return;
+        for (long saplDocumentId : documentsToUnpublish) {
+            unpublishVersion(getExistingById(saplDocumentId), withdrawnDocuments);
         }
 
-        // update persisted published documents
-        Iterable<PublishedSaplDocument> deletedPublishedSaplDocuments = deletePersistedPublishedSaplDocumentsByName(
-                publishedVersion.getName());
+        var createdPublishedSaplDocuments = new ArrayList<PublishedSaplDocument>(versionsToPublish.size());
+        for (var versionToPublish : versionsToPublish.entrySet()) {
+            createdPublishedSaplDocuments.add(publishVersion(getExistingById(versionToPublish.getKey()),
+                    versionToPublish.getValue(), withdrawnDocuments));
+        }
+        enforceUniquePublishedDocumentNames(
+                createdPublishedSaplDocuments.stream().map(PublishedSaplDocument::getDocumentName).toList());
 
-        // update persisted document
-        saplDocumentToUnpublish.setPublishedVersion(null);
-        saplDocumentRepository.save(saplDocumentToUnpublish);
+        log.info("publish {} and unpublish {} SAPL documents in one batch", versionsToPublish.size(),
+                documentsToUnpublish.size());
 
-        log.info("unpublish version {} of SAPL document with id {} (name: {})", publishedVersion.getVersionNumber(),
-                saplDocumentId, saplDocumentToUnpublish.getName());
+        emitChanges(withdrawnDocuments,
+                createdPublishedSaplDocuments.stream().map(this::parsePublishedSaplDocument).toList());
+    }
 
-        notifyAboutChangedPublicationOfSaplDocument(PrpUpdateEvent.Type.WITHDRAW, deletedPublishedSaplDocuments);
+    /**
+     * Reloads the published documents with the given names from the database and
+     * emits the differences to the currently published documents. Used to apply
+     * changes made by other instances sharing the database.
+     *
+     * @param documentNames the names of the changed documents
+     */
+    public void refreshPublishedDocuments(@NonNull Collection<String> documentNames) {
+        var withdrawnDocuments = new ArrayList<Document>();
+        var publishedDocuments = new ArrayList<Document>();
+        for (var documentName : documentNames) {
+            var currentDocument = getCurrentlyPublishedDocument(documentName);
+            if (currentDocument != null) {
+                withdrawnDocuments.add(currentDocument);
+            }
+            for (var publishedSaplDocument : publishedSaplDocumentRepository.findByDocumentName(documentName)) {
+                publishedDocuments.add(parsePublishedSaplDocument(publishedSaplDocument));
+            }
+        }
+        log.info("refresh published SAPL documents changed by other instance: {}", documentNames);
+        emitChanges(withdrawnDocuments, publishedDocuments);
     }
 
     public Collection<PublishedSaplDocument> getPublishedSaplDocuments() {
@@ -235,18 +279,114 @@ public class SaplDocumentService implements PrpUpdateEventSource {
         return dateFormatter.format(Instant.now());
     }
 
-    private PrpUpdateEvent generateInitialPrpUpdateEvent() {
-        List<PrpUpdateEvent.Update> updates = publishedSaplDocumentRepository.findAll().stream()
-                .map(publishedSaplDocument -> convertSaplDocumentToUpdateOfPrpUpdateEvent(publishedSaplDocument,
-                        PrpUpdateEvent.Type.PUBLISH))
-                .toList();
-        return new PrpUpdateEvent(updates);
+    private Document parsePublishedSaplDocument(PublishedSaplDocument publishedSaplDocument) {
+        return parsedDocumentCache.parse(publishedSaplDocument.getDocument());
     }
 
-    private PrpUpdateEvent.Update convertSaplDocumentToUpdateOfPrpUpdateEvent(
-            PublishedSaplDocument publishedSaplDocument, PrpUpdateEvent.Type prpUpdateEventType) {
-        Document document = saplInterpreter.parseDocument(publishedSaplDocument.getDocument());
-        return new Update(prpUpdateEventType, document);
+    /**
+     * Loads and parses all published documents page by page, so only one page of
+     * rows is held in memory at a time. If parallel loading is enabled, the
+     * documents of a page are parsed concurrently on the common fork-join pool.
+     */
+    private List<Document> loadPublishedDocuments() {
+        var      documents = new ArrayList<Document>();
+        Pageable pageable  = PageRequest.of(0, documentLoadingPageSize, Sort.by("saplDocumentId"));
+        while (pageable.isPaged()) {
+            Slice<PublishedSaplDocument> page = publishedSaplDocumentRepository.findAllBy(pageable);
+
+            var rows = page.getContent().stream();
+            if (parallelDocumentLoading) {
+                rows = rows.parallel();
+            }
+            documents.addAll(rows.map(this::parsePublishedSaplDocumentTimed).toList());
+
+            pageable = page.nextPageable();
+        }
+        return documents;
+    }
+
+    private Document parsePublishedSaplDocumentTimed(PublishedSaplDocument publishedSaplDocument) {
+        long start    = System.nanoTime();
+        var  document = parsePublishedSaplDocument(publishedSaplDocument);
+        log.debug("parsed published SAPL document {} in {} ms", publishedSaplDocument.getDocumentName(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return document;
+    }
+
+    /**
+     * Gets the parsed documents of published SAPL documents. Documents contained in
+     * the current snapshot are reused instead of being parsed again.
+     */
+    private synchronized List<Document> getPublishedDocuments(Iterable<PublishedSaplDocument> publishedSaplDocuments) {
+        var documents = new ArrayList<Document>();
+        for (var publishedSaplDocument : publishedSaplDocuments) {
+            var document = currentSnapshot.documents().get(publishedSaplDocument.getDocumentName());
+            documents.add(document != null ? document : parsePublishedSaplDocument(publishedSaplDocument));
+        }
+        return documents;
+    }
+
+    private synchronized Document getCurrentlyPublishedDocument(String documentName) {
+        return currentSnapshot.documents().get(documentName);
+    }
+
+    /**
+     * Publishes a version of a SAPL document. A previously published version is
+     * unpublished. Does not enforce unique names of the published documents.
+     *
+     * @return the created published document
+     */
+    private PublishedSaplDocument publishVersion(SaplDocument saplDocument, int versionToPublish,
+            List<Document> withdrawnDocuments) {
+        // unpublish other version if published
+        unpublishVersion(saplDocument, withdrawnDocuments);
+
+        SaplDocumentVersion saplDocumentVersionToPublish = saplDocument.getVersion(versionToPublish);
+
+        // update persisted published documents
+        PublishedSaplDocument publishedSaplDocument = new PublishedSaplDocument();
+        publishedSaplDocument.importSaplDocumentVersion(saplDocumentVersionToPublish);
+        PublishedSaplDocument createdPublishedSaplDocument = publishedSaplDocumentRepository
+                .save(publishedSaplDocument);
+
+        // update persisted document
+        saplDocument.setPublishedVersion(saplDocumentVersionToPublish).setLastModified(getCurrentTimestampAsString());
+        saplDocumentRepository.save(saplDocument);
+
+        log.info("publish version {} of SAPL document with id {} (name: {})",
+                saplDocumentVersionToPublish.getVersionNumber(), saplDocument.getId(),
+                saplDocumentVersionToPublish.getName());
+
+        configurationChangeLog.record(ConfigurationChangeType.PUBLISHED_DOCUMENT,
+                createdPublishedSaplDocument.getDocumentName());
+        return createdPublishedSaplDocument;
+    }
+
+    /**
+     * Unpublishes the published version of a SAPL document, if any.
+     *
+     * @return true if a version was unpublished
+     */
+    private boolean unpublishVersion(SaplDocument saplDocument, List<Document> withdrawnDocuments) {
+        SaplDocumentVersion publishedVersion = saplDocument.getPublishedVersion();
+        if (publishedVersion == null) {
+            return false;
+        }
+
+        // update persisted published documents
+        Iterable<PublishedSaplDocument> deletedPublishedSaplDocuments = deletePersistedPublishedSaplDocumentsByName(
+                publishedVersion.getName());
+        withdrawnDocuments.addAll(getPublishedDocuments(deletedPublishedSaplDocuments));
+
+        // update persisted document
+        saplDocument.setPublishedVersion(null);
+        saplDocumentRepository.save(saplDocument);
+
+        log.info("unpublish version {} of SAPL document with id {} (name: {})", publishedVersion.getVersionNumber(),
+                saplDocument.getId(), saplDocument.getName());
+
+        configurationChangeLog.record(ConfigurationChangeType.PUBLISHED_DOCUMENT, publishedVersion.getName());
+        return true;
     }
 
     private Iterable<PublishedSaplDocument> deletePersistedPublishedSaplDocumentsByName(String name) {
@@ -257,32 +397,20 @@ public class SaplDocumentService implements PrpUpdateEventSource {
         return publishedDocumentsWithName;
     }
 
-    private PublishedSaplDocument createPersistedPublishedSaplDocument(SaplDocumentVersion saplDocumentVersion)
+    private void enforceUniquePublishedDocumentNames(Collection<String> documentNames)
             throws PublishedDocumentNameCollisionException {
-        PublishedSaplDocument publishedSaplDocument = new PublishedSaplDocument();
-        publishedSaplDocument.importSaplDocumentVersion(saplDocumentVersion);
-
-        PublishedSaplDocument createdPublishedSaplDocument = publishedSaplDocumentRepository
-                .save(publishedSaplDocument);
-
         // enforce checking constraints in transaction
         try {
             publishedSaplDocumentRepository.findAll();
         } catch (DataIntegrityViolationException ex) {
-            throw new PublishedDocumentNameCollisionException(saplDocumentVersion.getName(), ex);
+            throw new PublishedDocumentNameCollisionException(String.join(", ", documentNames), ex);
         }
-
-        return createdPublishedSaplDocument;
     }
 
-    private void notifyAboutChangedPublicationOfSaplDocument(PrpUpdateEvent.Type prpUpdateEventType,
-            Iterable<PublishedSaplDocument> publishedSaplDocuments) {
-        List<PrpUpdateEvent.Update> updateEvents = Streamable.of(publishedSaplDocuments)
-                .map(publishedSaplDocument -> convertSaplDocumentToUpdateOfPrpUpdateEvent(publishedSaplDocument,
-                        prpUpdateEventType))
-                .toList();
-
-        PrpUpdateEvent prpUpdateEvent = new PrpUpdateEvent(updateEvents);
-        prpUpdateEventSink.emitNext(prpUpdateEvent, EmitFailureHandler.FAIL_FAST);
+    private synchronized void emitChanges(Collection<Document> withdrawnDocuments,
+            Collection<Document> publishedDocuments) {
+        currentSnapshot = currentSnapshot.apply(withdrawnDocuments, publishedDocuments);
+        publishedDocumentsSink.emitNext(currentSnapshot, EmitFailureHandler.FAIL_FAST);
+        eventPublisher.publishEvent(new PDPConfigurationChangedEvent("documents"));
     }
 }
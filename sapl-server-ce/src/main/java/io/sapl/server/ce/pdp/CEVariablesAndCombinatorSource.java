@@ -17,14 +17,17 @@
  */
 package io.sapl.server.ce.pdp;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.google.common.collect.Maps;
 
 import io.sapl.api.interpreter.Val;
 import io.sapl.interpreter.combinators.PolicyDocumentCombiningAlgorithm;
@@ -43,40 +46,93 @@ import reactor.core.publisher.Sinks.Many;
 @RequiredArgsConstructor
 public class CEVariablesAndCombinatorSource implements VariablesAndCombinatorSource, PDPConfigurationPublisher {
 
-    private Many<Collection<Variable>>             variablesProcessorSink = Sinks.many().replay().all();
-    private Many<PolicyDocumentCombiningAlgorithm> combiningAlgorithmSink = Sinks.many().replay().all();
+    // only the latest values are retained, variables are parsed once per change
+    // and the resulting immutable map is shared by all subscribers
+    private final Many<Optional<Map<String, Val>>>                 variablesSink          = Sinks.many().replay()
+            .latest();
+    private final Many<Optional<PolicyDocumentCombiningAlgorithm>> combiningAlgorithmSink = Sinks.many().replay()
+            .latest();
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // raw JSON values of the published variables to detect actual changes
+    private final Map<String, String> jsonValues  = new HashMap<>();
+    private Map<String, Val>          variables   = Map.of();
+    private boolean                   initialized = false;
 
     @Override
     public Flux<Optional<Map<String, Val>>> getVariables() {
-        return variablesProcessorSink.asFlux().map(CEVariablesAndCombinatorSource::variablesCollectionToMap)
-                .map(Optional::of);
+        return variablesSink.asFlux();
     }
 
     @Override
     public Flux<Optional<PolicyDocumentCombiningAlgorithm>> getCombiningAlgorithm() {
-        return combiningAlgorithmSink.asFlux().map(Optional::of);
+        return combiningAlgorithmSink.asFlux().distinctUntilChanged();
     }
 
     @Override
-    public void publishCombiningAlgorithm(@NonNull PolicyDocumentCombiningAlgorithm algorithm) {
-        combiningAlgorithmSink.emitNext(algorithm, EmitFailureHandler.FAIL_FAST);
+    public synchronized void publishCombiningAlgorithm(@NonNull PolicyDocumentCombiningAlgorithm algorithm) {
+        combiningAlgorithmSink.emitNext(Optional.of(algorithm), EmitFailureHandler.FAIL_FAST);
+        eventPublisher.publishEvent(new PDPConfigurationChangedEvent("combining algorithm"));
     }
 
+    /**
+     * Replaces all variables. Only the difference to the currently published
+     * variables is applied.
+     */
     @Override
-    public void publishVariables(@NonNull Collection<Variable> variables) {
-        variablesProcessorSink.emitNext(variables, EmitFailureHandler.FAIL_FAST);
+    public synchronized void publishVariables(@NonNull Collection<Variable> variables) {
+        var publishedNames = variables.stream().map(Variable::getName).collect(Collectors.toSet());
+        var withdrawnNames = jsonValues.keySet().stream().filter(name -> !publishedNames.contains(name)).toList();
+        publishVariablesUpdate(new VariablesUpdateEvent(variables, withdrawnNames));
     }
 
-    private static Map<String, Val> variablesCollectionToMap(@NonNull Collection<Variable> variables) {
-        Map<String, Val> variablesAsMap = Maps.newHashMapWithExpectedSize(variables.size());
-        for (Variable variable : variables) {
+    /**
+     * Applies an incremental change. Only created or changed variables are parsed.
+     * If the values of the variables did not change at all, nothing is emitted and
+     * the subscribers are not bothered.
+     */
+    @Override
+    public synchronized void publishVariablesUpdate(@NonNull VariablesUpdateEvent event) {
+        Map<String, Val> newVariables = new HashMap<>(variables);
+        var              added        = new ArrayList<String>();
+        var              changed      = new ArrayList<String>();
+        var              removed      = new ArrayList<String>();
+
+        for (String name : event.withdrawn()) {
+            if (jsonValues.remove(name) != null) {
+                newVariables.remove(name);
+                removed.add(name);
+            }
+        }
+
+        for (Variable variable : event.published()) {
+            var name      = variable.getName();
+            var jsonValue = variable.getJsonValue();
+            if (jsonValue.equals(jsonValues.get(name))) {
+                continue;
+            }
             try {
-                variablesAsMap.put(variable.getName(), Val.ofJson(variable.getJsonValue()));
+                newVariables.put(name, Val.ofJson(jsonValue));
             } catch (JsonProcessingException e) {
-                log.error("Ignoring variable {} not valid JSON.", variable.getName());
+                log.error("Ignoring variable {} not valid JSON.", name);
+                continue;
+            }
+            if (jsonValues.put(name, jsonValue) == null) {
+                added.add(name);
+            } else {
+                changed.add(name);
             }
         }
 
-        return variablesAsMap;
+        if (initialized && added.isEmpty() && changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        log.debug("variables changed (added: {}, changed: {}, removed: {})", added, changed, removed);
+        initialized = true;
+        variables   = Map.copyOf(newVariables);
+        variablesSink.emitNext(Optional.of(variables), EmitFailureHandler.FAIL_FAST);
+        eventPublisher.publishEvent(new PDPConfigurationChangedEvent("variables"));
     }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import org.springframework.beans.factory.DisposableBean;
+
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Serves decide-once requests of the embedded PDP from the
+ * {@link DecisionCache} and decides requests which are not cached in batches
+ * of the {@link DecisionBatcher}. The decisions of identical streaming
+ * subscriptions are shared with {@link SharedDecisionStreams}.
+ * Multi-subscriptions are passed through.
+ */
+class CachingPolicyDecisionPoint implements PolicyDecisionPoint, DisposableBean {
+
+    private final PolicyDecisionPoint   delegate;
+    private final DecisionCache         decisionCache;
+    private final SharedDecisionStreams sharedDecisionStreams;
+    private final DecisionBatcher       decisionBatcher;
+
+    CachingPolicyDecisionPoint(PolicyDecisionPoint delegate, DecisionCache decisionCache,
+            SharedDecisionStreams sharedDecisionStreams, DecisionBatching decisionBatching) {
+        this.delegate              = delegate;
+        this.decisionCache         = decisionCache;
+        this.sharedDecisionStreams = sharedDecisionStreams;
+        this.decisionBatcher       = decisionBatching.batcher(delegate);
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> decideOnce(AuthorizationSubscription authzSubscription) {
+        return decisionCache.decideOnce(authzSubscription, this::decideOnceUncached);
+    }
+
+    private Mono<AuthorizationDecision> decideOnceUncached(AuthorizationSubscription authzSubscription) {
+        if (decisionBatcher == null) {
+            return delegate.decideOnce(authzSubscription);
+        }
+        return decisionBatcher.decideOnce(authzSubscription);
+    }
+
+    @Override
+    public Flux<AuthorizationDecision> decide(AuthorizationSubscription authzSubscription) {
+        return sharedDecisionStreams.decide(authzSubscription, delegate::decide);
+    }
+
+    @Override
+    public Flux<IdentifiableAuthorizationDecision> decide(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decide(multiAuthzSubscription);
+    }
+
+    @Override
+    public Flux<MultiAuthorizationDecision> decideAll(MultiAuthorizationSubscription multiAuthzSubscription) {
+        return delegate.decideAll(multiAuthzSubscription);
+    }
+
+    /**
+     * Stops the batching and disposes the wrapped PDP.
+     */
+    @Override
+    public void destroy() throws Exception {
+        dispose();
+    }
+
+    public void dispose() throws Exception {
+        if (decisionBatcher != null) {
+            decisionBatcher.dispose();
+        }
+        if (delegate instanceof DisposableBean disposableBean) {
+            disposableBean.destroy();
+        } else if (delegate instanceof Disposable disposable) {
+            disposable.dispose();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashCode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.util.context.ContextView;
+
+/**
+ * Batching stage in front of a PDP, created by {@link DecisionBatching}.
+ * Pending decide-once requests are collected and decided as one
+ * multi-subscription. Each request receives the first decision of its
+ * subscription. Requests may be added concurrently from any thread without
+ * blocking, and a failing batch only fails its own requests.
+ */
+@Slf4j
+class DecisionBatcher implements Disposable {
+
+    private final PolicyDecisionPoint          pdp;
+    private final ObjectMapper                 mapper;
+    private final DistributionSummary          batchSizes;
+    private final Counter                      coalesced;
+    private final Disposable                   batches;
+    private volatile FluxSink<PendingDecision> pending;
+
+    DecisionBatcher(PolicyDecisionPoint pdp, ObjectMapper mapper, int maxSize, Duration window,
+            DistributionSummary batchSizes, Counter coalesced) {
+        this.pdp        = pdp;
+        this.mapper     = mapper;
+        this.batchSizes = batchSizes;
+        this.coalesced  = coalesced;
+        this.batches    = Flux.<PendingDecision>create(sink -> this.pending = sink).bufferTimeout(maxSize, window)
+                .flatMap(batch -> Mono.defer(() -> decide(batch)).onErrorResume(error -> {
+                    log.error("deciding a batch failed", error);
+                    batch.forEach(request -> request.sink().error(error));
+                    return Mono.empty();
+                })).doOnDiscard(PendingDecision.class, DecisionBatcher::reject)
+                .subscribe(null, error -> log.error("decision batching failed", error));
+    }
+
+    /**
+     * Adds the request to the next batch.
+     *
+     * @param subscription the authorization subscription
+     * @return the decision
+     */
+    Mono<AuthorizationDecision> decideOnce(AuthorizationSubscription subscription) {
+        return Mono.deferContextual(ctx -> Mono.create(sink -> {
+            var request = new PendingDecision(subscription, ctx, sink);
+            if (isDisposed()) {
+                reject(request);
+            } else {
+                // requests discarded after the batcher has been disposed are rejected
+                pending.next(request);
+            }
+        }));
+    }
+
+    @Override
+    public void dispose() {
+        batches.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return batches.isDisposed();
+    }
+
+    private Mono<Void> decide(List<PendingDecision> batch) {
+        batchSizes.record(batch.size());
+
+        // identical subscriptions are decided once
+        var byHash = new LinkedHashMap<HashCode, List<PendingDecision>>();
+        for (var request : batch) {
+            byHash.computeIfAbsent(SubscriptionHash.of(mapper, request.subscription()), hash -> new ArrayList<>())
+                    .add(request);
+        }
+        coalesced.increment(batch.size() - (double) byHash.size());
+
+        var multiSubscription = new MultiAuthorizationSubscription();
+        var byId              = new LinkedHashMap<String, List<PendingDecision>>();
+        for (var requests : byHash.values()) {
+            var id = String.valueOf(byId.size());
+            multiSubscription.addAuthorizationSubscription(id, requests.get(0).subscription());
+            byId.put(id, requests);
+        }
+
+        var attributesAccessed = new AtomicBoolean();
+        var answered           = new HashSet<String>();
+        return pdp.decide(multiSubscription)
+                .filter(decision -> answered.add(decision.getAuthorizationSubscriptionId()))
+                .take(byId.size()).doOnNext(decision -> complete(byId, decision, attributesAccessed.get()))
+                .doOnError(error -> byId.forEach((id, requests) -> {
+                    if (!answered.contains(id)) {
+                        requests.forEach(request -> request.sink().error(error));
+                    }
+                })).doOnTerminate(() -> byId.forEach((id, requests) -> {
+                    if (!answered.contains(id)) {
+                        requests.forEach(request -> request.sink().success());
+                    }
+                })).contextWrite(ctx -> DecisionCache.observeAttributesAccess(ctx, attributesAccessed))
+                .onErrorResume(error -> Mono.empty()).then();
+    }
+
+    private static void reject(PendingDecision request) {
+        request.sink().error(new IllegalStateException("decision batching has been stopped"));
+    }
+
+    /**
+     * The attribute evaluations of a batch cannot be attributed to single
+     * subscriptions, so all subscriptions of a batch evaluating an attribute
+     * are considered to depend on attributes.
+     */
+    private static void complete(Map<String, List<PendingDecision>> byId, IdentifiableAuthorizationDecision decision,
+            boolean attributesAccessed) {
+        for (var request : byId.get(decision.getAuthorizationSubscriptionId())) {
+            if (attributesAccessed) {
+                DecisionCache.markAttributesAccessed(request.context());
+            }
+            request.sink().success(decision.getAuthorizationDecision());
+        }
+    }
+
+    private record PendingDecision(AuthorizationSubscription subscription, ContextView context,
+            MonoSink<AuthorizationDecision> sink) {}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Configuration of the micro-batching of decide-once requests. Concurrent
+ * requests are collected for at most {@code window} milliseconds or until
+ * {@code maxSize} requests are pending, and are then decided together as one
+ * multi-subscription. Identical subscriptions within a batch are decided once.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class DecisionBatching {
+
+    private static final String BATCH_METRIC = "sapl.pdp.decisions.batch";
+
+    @Getter
+    private final boolean             enabled;
+    private final int                 maxSize;
+    private final Duration            window;
+    private final ObjectMapper        mapper;
+    private final DistributionSummary batchSizes;
+    private final Counter             coalesced;
+
+    public DecisionBatching(@Value("${io.sapl.server.decisionBatching.enabled:#{false}}") boolean enabled,
+            @Value("${io.sapl.server.decisionBatching.maxSize:#{100}}") int maxSize,
+            @Value("${io.sapl.server.decisionBatching.window:#{5}}") long windowMillis, ObjectMapper mapper,
+            MeterRegistry meterRegistry) {
+        this.enabled    = enabled;
+        this.maxSize    = maxSize;
+        this.window     = Duration.ofMillis(windowMillis);
+        this.mapper     = mapper;
+        this.batchSizes = DistributionSummary.builder(BATCH_METRIC + ".size")
+                .description("Decide-once requests decided together in one batch").register(meterRegistry);
+        this.coalesced  = Counter.builder(BATCH_METRIC + ".coalesced")
+                .description("Decide-once requests answered by an identical request of the same batch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates the batching stage in front of a PDP.
+     *
+     * @param pdp the PDP deciding the batches
+     * @return the batching stage, or null if batching is disabled
+     */
+    DecisionBatcher batcher(@NonNull PolicyDecisionPoint pdp) {
+        if (!enabled) {
+            return null;
+        }
+        return new DecisionBatcher(pdp, mapper, maxSize, window, batchSizes, coalesced);
+    }
+}
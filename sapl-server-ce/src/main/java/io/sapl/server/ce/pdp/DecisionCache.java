@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.google.common.hash.HashCode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+/**
+ * Cache of decide-once decisions. Decisions are keyed by a canonical hash of
+ * the subscription and the revision of the PDP configuration. The revision is
+ * incremented and the cache is cleared whenever documents are published or
+ * withdrawn or the variables or the combining algorithm change, i.e., when a
+ * {@link PDPConfigurationChangedEvent} is published after the PDP has applied
+ * the change.
+ * <p>
+ * Only decisions which were made without evaluating any PIP attribute are
+ * cached, as attributes may change at any time. Functions are assumed to be
+ * free of side effects.
+ */
+@Slf4j
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class DecisionCache implements SmartInitializingSingleton {
+
+    private static final String CACHE_METRIC      = "sapl.pdp.decisions.cache";
+    private static final Object ATTRIBUTES_ACCESS = DecisionCache.class.getName() + ".attributesAccess";
+
+    @Getter
+    private final boolean                                   enabled;
+    private final ObjectMapper                              mapper;
+    private final Cache<DecisionKey, AuthorizationDecision> decisions;
+    private final AtomicLong                                revision = new AtomicLong();
+    private final Counter                                   hits;
+    private final Counter                                   misses;
+    private final Counter                                   uncacheable;
+
+    private volatile boolean initialized = false;
+
+    public DecisionCache(@Value("${io.sapl.server.decisionCaching.enabled:#{false}}") boolean enabled,
+            @Value("${io.sapl.server.decisionCaching.expire:#{300}}") Integer expireSeconds,
+            @Value("${io.sapl.server.decisionCaching.maxSize:#{10000}}") Integer maxSize, ObjectMapper mapper,
+            MeterRegistry meterRegistry) {
+        this.enabled     = enabled;
+        this.mapper      = mapper;
+        this.decisions   = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(expireSeconds)).build();
+        this.hits        = Counter.builder(CACHE_METRIC).tag("result", "hit")
+                .description("Decide-once decisions served from the cache").register(meterRegistry);
+        this.misses      = Counter.builder(CACHE_METRIC).tag("result", "miss")
+                .description("Decide-once decisions not found in the cache").register(meterRegistry);
+        this.uncacheable = Counter.builder(CACHE_METRIC).tag("result", "uncacheable")
+                .description("Decide-once decisions not cached as PIP attributes were evaluated")
+                .register(meterRegistry);
+        meterRegistry.gauge(CACHE_METRIC + ".size", decisions, Cache::estimatedSize);
+    }
+
+    /**
+     * Starts caching after all singletons, including the PDP, have been created.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        initialized = true;
+        log.info("caching decide-once decisions of subscriptions without PIP attributes");
+    }
+
+    /**
+     * Clears the cache after the configuration of the PDP has changed. The event
+     * is published after the change has been emitted to the PDP, which applies it
+     * synchronously, so the decisions cached afterwards are made with the new
+     * configuration. Decisions made in the meantime are not cached, as the
+     * revision has changed.
+     *
+     * @param event the change of the configuration
+     */
+    @EventListener
+    public void onConfigurationChanged(PDPConfigurationChangedEvent event) {
+        if (enabled) {
+            invalidate(event.change());
+        }
+    }
+
+    /**
+     * Makes a decide-once decision, or takes it from the cache.
+     *
+     * @param subscription the authorization subscription
+     * @param decideOnce   makes the decision if it is not cached
+     * @return the decision
+     */
+    public Mono<AuthorizationDecision> decideOnce(@NonNull AuthorizationSubscription subscription,
+            @NonNull Function<AuthorizationSubscription, Mono<AuthorizationDecision>> decideOnce) {
+        if (!enabled || !initialized) {
+            return decideOnce.apply(subscription);
+        }
+        return Mono.defer(() -> {
+            var key    = new DecisionKey(revision.get(), SubscriptionHash.of(mapper, subscription));
+            var cached = decisions.getIfPresent(key);
+            if (cached != null) {
+                hits.increment();
+                return Mono.just(cached);
+            }
+
+            misses.increment();
+            var attributesAccessed = new AtomicBoolean();
+            return decideOnce.apply(subscription).doOnNext(decision -> {
+                if (attributesAccessed.get()) {
+                    uncacheable.increment();
+                } else if (key.revision() == revision.get()) {
+                    // the configuration did not change during the evaluation
+                    decisions.put(key, decision);
+                }
+            }).contextWrite(ctx -> observeAttributesAccess(ctx, attributesAccessed));
+        });
+    }
+
+    /**
+     * Records in the given flag whether PIP attributes are evaluated in the
+     * context.
+     *
+     * @param ctx      the context of an evaluation
+     * @param accessed set once an attribute is evaluated
+     * @return the context observing attribute evaluations
+     */
+    static Context observeAttributesAccess(Context ctx, AtomicBoolean accessed) {
+        return ctx.put(ATTRIBUTES_ACCESS, accessed);
+    }
+
+    /**
+     * Marks the decision evaluated in the given context as not cacheable.
+     *
+     * @param ctx the context of an attribute evaluation
+     */
+    static void markAttributesAccessed(ContextView ctx) {
+        ctx.<AtomicBoolean>getOrEmpty(ATTRIBUTES_ACCESS).ifPresent(accessed -> accessed.set(true));
+    }
+
+    /**
+     * Wraps an attribute stream, so that a decision evaluating it is not cached.
+     *
+     * @param attribute the attribute stream
+     * @param <T>       the type of the attribute values
+     * @return the wrapped stream
+     */
+    static <T> Flux<T> observeAttribute(Flux<T> attribute) {
+        return Flux.deferContextual(ctx -> {
+            markAttributesAccessed(ctx);
+            return attribute;
+        });
+    }
+
+    private void invalidate(String reason) {
+        log.debug("clearing decision cache, {} changed", reason);
+        revision.incrementAndGet();
+        decisions.invalidateAll();
+    }
+
+    private record DecisionKey(long revision, HashCode subscriptionHash) {}
+}
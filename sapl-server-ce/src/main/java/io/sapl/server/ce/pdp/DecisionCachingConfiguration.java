@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.ClassUtils;
+
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.interpreter.pip.AttributeContext;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * Wires the {@link DecisionCache}, the {@link SharedDecisionStreams} and the
+ * {@link DecisionBatching} into the embedded PDP. The PDP is wrapped to serve
+ * decide-once requests from the cache or in batches and to share streaming
+ * decisions, and the attribute context is wrapped to recognize decisions which
+ * evaluated PIP attributes.
+ */
+@Slf4j
+@Configuration
+public class DecisionCachingConfiguration {
+
+    @Bean
+    static BeanPostProcessor decisionCachingPostProcessor(ObjectProvider<DecisionCache> decisionCache,
+            ObjectProvider<SharedDecisionStreams> sharedDecisionStreams,
+            ObjectProvider<DecisionBatching> decisionBatching) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof PolicyDecisionPoint || bean instanceof AttributeContext)) {
+                    return bean;
+                }
+                var cache    = decisionCache.getIfAvailable();
+                var shared   = sharedDecisionStreams.getIfAvailable();
+                var batching = decisionBatching.getIfAvailable();
+                if (cache == null || shared == null || batching == null) {
+                    return bean;
+                }
+                if (bean instanceof PolicyDecisionPoint pdp
+                        && (cache.isEnabled() || shared.isEnabled() || batching.isEnabled())) {
+                    log.debug("caching, sharing and batching decisions of {}", beanName);
+                    return new CachingPolicyDecisionPoint(pdp, cache, shared, batching);
+                }
+                if (bean instanceof AttributeContext && cache.isEnabled()) {
+                    return observeAttributes(bean);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * The attribute context offers many methods for documentation and code
+     * completion. Only the attribute streams it returns are of interest, so it
+     * is wrapped in a dynamic proxy observing all returned streams.
+     */
+    private static Object observeAttributes(Object attributeContext) {
+        var classLoader = attributeContext.getClass().getClassLoader();
+        var interfaces  = ClassUtils.getAllInterfaces(attributeContext);
+        return Proxy.newProxyInstance(classLoader, interfaces, (proxy, method, args) -> {
+            try {
+                var result = method.invoke(attributeContext, args);
+                return result instanceof Flux<?> attribute ? DecisionCache.observeAttribute(attribute) : result;
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+}
@@ -40,4 +40,12 @@ public interface PDPConfigurationPublisher {
      * @param variables the collection of {@link Variable} instances
      */
     void publishVariables(@NonNull Collection<Variable> variables);
+
+    /**
+     * Publishes an incremental change of the variables. Variables not contained
+     * in the event remain untouched.
+     *
+     * @param event the changed and removed variables
+     */
+    void publishVariablesUpdate(@NonNull VariablesUpdateEvent event);
 }
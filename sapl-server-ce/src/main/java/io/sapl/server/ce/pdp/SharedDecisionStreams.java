@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashCode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.Getter;
+import lombok.NonNull;
+import reactor.core.publisher.Flux;
+
+/**
+ * Shares the decisions of identical streaming subscriptions. All subscribers
+ * of an equal subscription get the same decision stream, so the policies and
+ * PIP attributes are evaluated once per distinct subscription. Late subscribers
+ * immediately receive the latest decision. The evaluation is cancelled when
+ * the last subscriber cancels.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class SharedDecisionStreams {
+
+    private static final String STREAMS_METRIC = "sapl.pdp.decisions.streams";
+
+    @Getter
+    private final boolean                                    enabled;
+    private final ObjectMapper                               mapper;
+    private final Map<HashCode, Flux<AuthorizationDecision>> streams = new ConcurrentHashMap<>();
+    private final Counter                                    created;
+    private final Counter                                    joined;
+
+    public SharedDecisionStreams(@Value("${io.sapl.server.decisionSharing.enabled:#{false}}") boolean enabled,
+            ObjectMapper mapper, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.mapper  = mapper;
+        this.created = Counter.builder(STREAMS_METRIC).tag("result", "created")
+                .description("Streaming subscriptions starting a new evaluation").register(meterRegistry);
+        this.joined  = Counter.builder(STREAMS_METRIC).tag("result", "joined")
+                .description("Streaming subscriptions joining the evaluation of an equal subscription")
+                .register(meterRegistry);
+        meterRegistry.gauge(STREAMS_METRIC + ".active", streams, Map::size);
+    }
+
+    /**
+     * Gets the shared decision stream of the subscription, or starts it.
+     *
+     * @param subscription the authorization subscription
+     * @param decide       starts the evaluation of the subscription
+     * @return the shared decisions
+     */
+    public Flux<AuthorizationDecision> decide(@NonNull AuthorizationSubscription subscription,
+            @NonNull Function<AuthorizationSubscription, Flux<AuthorizationDecision>> decide) {
+        if (!enabled) {
+            return decide.apply(subscription);
+        }
+        return Flux.defer(() -> {
+            var key       = SubscriptionHash.of(mapper, subscription);
+            var isCreated = new boolean[1];
+            var shared    = streams.computeIfAbsent(key, k -> {
+                                isCreated[0] = true;
+                                return share(k, decide.apply(subscription));
+                            });
+            if (isCreated[0]) {
+                created.increment();
+            } else {
+                joined.increment();
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * The stream removes itself once its evaluation has been cancelled or has
+     * terminated. Subscribers joining in between restart the evaluation.
+     */
+    private Flux<AuthorizationDecision> share(HashCode key, Flux<AuthorizationDecision> decisions) {
+        var shared = new AtomicReference<Flux<AuthorizationDecision>>();
+        shared.set(decisions.doFinally(signal -> streams.remove(key, shared.get())).replay(1).refCount());
+        return shared.get();
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+import lombok.experimental.UtilityClass;
+
+/**
+ * Canonical hash of authorization subscriptions. Subscriptions which only
+ * differ in the order of the fields of their objects have the same hash.
+ */
+@UtilityClass
+class SubscriptionHash {
+
+    /**
+     * @param mapper       the mapper converting the subscription to JSON
+     * @param subscription the authorization subscription
+     * @return the SHA-256 of the canonical form of the subscription
+     */
+    HashCode of(ObjectMapper mapper, AuthorizationSubscription subscription) {
+        var hasher = Hashing.sha256().newHasher();
+        hash(mapper.valueToTree(subscription), hasher);
+        return hasher.hash();
+    }
+
+    private void hash(JsonNode node, Hasher hasher) {
+        hasher.putInt(node.getNodeType().ordinal());
+        if (node.isObject()) {
+            var fieldNames = new ArrayList<String>();
+            node.fieldNames().forEachRemaining(fieldNames::add);
+            Collections.sort(fieldNames);
+            hasher.putInt(fieldNames.size());
+            for (var fieldName : fieldNames) {
+                putString(fieldName, hasher);
+                hash(node.get(fieldName), hasher);
+            }
+        } else if (node.isArray()) {
+            hasher.putInt(node.size());
+            for (var element : node) {
+                hash(element, hasher);
+            }
+        } else {
+            putString(node.toString(), hasher);
+        }
+    }
+
+    private void putString(String value, Hasher hasher) {
+        hasher.putInt(value.length());
+        hasher.putString(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import java.util.Collection;
+import java.util.List;
+
+import io.sapl.server.ce.model.pdpconfiguration.Variable;
+import lombok.NonNull;
+
+/**
+ * Incremental change of the variables of the PDP.
+ *
+ * @param published the created or changed variables
+ * @param withdrawn the names of the removed variables
+ */
+public record VariablesUpdateEvent(@NonNull Collection<Variable> published, @NonNull Collection<String> withdrawn) {
+
+    /**
+     * Creates an event for a single created or changed variable.
+     *
+     * @param variable the created or changed variable
+     * @return the event
+     */
+    public static VariablesUpdateEvent publish(@NonNull Variable variable) {
+        return new VariablesUpdateEvent(List.of(variable), List.of());
+    }
+
+    /**
+     * Creates an event for a single removed variable.
+     *
+     * @param name the name of the removed variable
+     * @return the event
+     */
+    public static VariablesUpdateEvent withdraw(@NonNull String name) {
+        return new VariablesUpdateEvent(List.of(), List.of(name));
+    }
+}
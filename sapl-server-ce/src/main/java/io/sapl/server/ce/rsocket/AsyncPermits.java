@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.micrometer.core.instrument.Counter;
+import io.rsocket.exceptions.RejectedException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+/**
+ * Non-blocking counting semaphore for RSocket requests. If all permits are
+ * used, requests wait in a queue or are rejected if the queue is full. The
+ * waiting requests are counted by a counter shared by several instances, which
+ * limits the waiting requests of all of them together. A released permit is
+ * handed over to the next waiting request directly, so new requests cannot
+ * overtake waiting ones.
+ */
+final class AsyncPermits {
+
+    private final int                            maxPermits;
+    private final int                            maxQueued;
+    private final String                         rejectionMessage;
+    private final AtomicInteger                  queuedGauge;
+    private final Counter                        rejectedCounter;
+    private final Deque<MonoSink<AsyncPermits>> waiting = new ArrayDeque<>();
+    private int                                  used;
+
+    AsyncPermits(int maxPermits, int maxQueued, String rejectionMessage, AtomicInteger queuedGauge,
+            Counter rejectedCounter) {
+        this.maxPermits       = maxPermits;
+        this.maxQueued        = maxQueued;
+        this.rejectionMessage = rejectionMessage;
+        this.queuedGauge      = queuedGauge;
+        this.rejectedCounter  = rejectedCounter;
+    }
+
+    /**
+     * @return this instance after a permit has been acquired, or a
+     *         {@link RejectedException} if no permit is available and the queue
+     *         is full
+     */
+    Mono<AsyncPermits> acquire() {
+        return Mono.create(sink -> {
+            synchronized (this) {
+                if (used < maxPermits) {
+                    used++;
+                } else if (!reserveQueueSlot()) {
+                    rejectedCounter.increment();
+                    sink.error(new RejectedException(rejectionMessage));
+                    return;
+                } else {
+                    waiting.add(sink);
+                    sink.onCancel(() -> cancel(sink));
+                    return;
+                }
+            }
+            sink.success(this);
+        });
+    }
+
+    /**
+     * @return releases a permit and hands it over to the next waiting request
+     */
+    Mono<Void> release() {
+        return Mono.fromRunnable(this::releasePermit);
+    }
+
+    private boolean reserveQueueSlot() {
+        int queued;
+        do {
+            queued = queuedGauge.get();
+            if (queued >= maxQueued) {
+                return false;
+            }
+        } while (!queuedGauge.compareAndSet(queued, queued + 1));
+        return true;
+    }
+
+    private void releasePermit() {
+        MonoSink<AsyncPermits> next;
+        synchronized (this) {
+            next = waiting.poll();
+            if (next == null) {
+                used--;
+                return;
+            }
+            queuedGauge.decrementAndGet();
+        }
+        next.success(this);
+    }
+
+    private void cancel(MonoSink<AsyncPermits> waiter) {
+        synchronized (this) {
+            if (waiting.remove(waiter)) {
+                queuedGauge.decrementAndGet();
+                return;
+            }
+        }
+        // the permit has been handed over, but is not delivered to a cancelled sink
+        releasePermit();
+    }
+}
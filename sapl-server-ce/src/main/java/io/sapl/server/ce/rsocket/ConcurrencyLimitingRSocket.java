@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+
+import io.netty.util.ReferenceCountUtil;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.util.RSocketProxy;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Responder of one connection limited by {@link RSocketConcurrencyLimits}.
+ * Streams and channels hold a permit of the connection and of the principal
+ * until they terminate, request-response calls until they complete.
+ * <p>
+ * The payloads of a request are owned by this responder until they are handed
+ * over to the wrapped responder. If the request is rejected, fails or is
+ * cancelled while waiting for a permit, its payloads are released here.
+ */
+class ConcurrencyLimitingRSocket extends RSocketProxy {
+
+    private final RSocketConcurrencyLimits limits;
+    private final AsyncPermits             connectionStreams;
+    private final AsyncPermits             connectionCalls;
+
+    ConcurrencyLimitingRSocket(RSocket source, RSocketConcurrencyLimits limits, AsyncPermits connectionStreams,
+            AsyncPermits connectionCalls) {
+        super(source);
+        this.limits            = limits;
+        this.connectionStreams = connectionStreams;
+        this.connectionCalls   = connectionCalls;
+    }
+
+    @Override
+    public Mono<Payload> requestResponse(Payload payload) {
+        var handedOver = new AtomicBoolean();
+        return Mono.usingWhen(connectionCalls.acquire(),
+                connection -> Mono.usingWhen(limits.principalCalls().flatMap(AsyncPermits::acquire),
+                        principal -> Mono.defer(
+                                () -> handedOver.compareAndSet(false, true) ? super.requestResponse(payload)
+                                        : Mono.<Payload>empty()),
+                        AsyncPermits::release),
+                AsyncPermits::release).doFinally(signal -> {
+                    if (handedOver.compareAndSet(false, true)) {
+                        ReferenceCountUtil.safeRelease(payload);
+                    }
+                });
+    }
+
+    @Override
+    public Flux<Payload> requestStream(Payload payload) {
+        var handedOver = new AtomicBoolean();
+        return Flux.usingWhen(connectionStreams.acquire(),
+                connection -> Flux.usingWhen(limits.principalStreams().flatMap(AsyncPermits::acquire),
+                        principal -> Flux.defer(
+                                () -> handedOver.compareAndSet(false, true) ? super.requestStream(payload)
+                                        : Flux.<Payload>empty()),
+                        AsyncPermits::release),
+                AsyncPermits::release).doFinally(signal -> {
+                    if (handedOver.compareAndSet(false, true)) {
+                        ReferenceCountUtil.safeRelease(payload);
+                    }
+                });
+    }
+
+    @Override
+    public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+        var handedOver = new AtomicBoolean();
+        return Flux.usingWhen(connectionStreams.acquire(),
+                connection -> Flux.usingWhen(limits.principalStreams().flatMap(AsyncPermits::acquire),
+                        principal -> Flux.defer(
+                                () -> handedOver.compareAndSet(false, true) ? super.requestChannel(payloads)
+                                        : Flux.<Payload>empty()),
+                        AsyncPermits::release),
+                AsyncPermits::release).doFinally(signal -> {
+                    if (handedOver.compareAndSet(false, true)) {
+                        discard(payloads);
+                    }
+                });
+    }
+
+    /**
+     * Cancels the inbound payloads of a channel which never reached the
+     * responder, which releases its first payload and informs the requester.
+     */
+    private static void discard(Publisher<Payload> payloads) {
+        payloads.subscribe(new BaseSubscriber<Payload>() {
+            @Override
+            protected void hookOnSubscribe(Subscription subscription) {
+                cancel();
+            }
+
+            @Override
+            protected void hookOnNext(Payload payload) {
+                ReferenceCountUtil.safeRelease(payload);
+            }
+        });
+    }
+}
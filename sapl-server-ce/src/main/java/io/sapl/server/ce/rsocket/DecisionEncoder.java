@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractEncoder;
+import org.springframework.core.codec.EncodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationDecision;
+import reactor.core.publisher.Flux;
+
+/**
+ * Encodes authorization decisions directly into buffers of the buffer factory
+ * of the RSocket server, which are pooled by default. The plain decisions
+ * without obligations, advice and resource are encoded once on startup and
+ * their encoding is shared by all responses.
+ */
+class DecisionEncoder extends AbstractEncoder<Object> {
+
+    private static final int                         INITIAL_BUFFER_SIZE = 256;
+    private static final Set<Class<?>>               ENCODABLE_TYPES     = Set.of(AuthorizationDecision.class,
+            IdentifiableAuthorizationDecision.class, MultiAuthorizationDecision.class);
+    private static final List<AuthorizationDecision> PLAIN_DECISIONS     = List.of(AuthorizationDecision.PERMIT,
+            AuthorizationDecision.DENY, AuthorizationDecision.NOT_APPLICABLE, AuthorizationDecision.INDETERMINATE);
+
+    private final ObjectWriter                        writer;
+    private final Map<AuthorizationDecision, ByteBuf> encodedPlainDecisions = new HashMap<>();
+
+    DecisionEncoder(ObjectMapper mapper, MimeType... mimeTypes) throws JsonProcessingException {
+        super(mimeTypes.length == 0 ? new MimeType[] { MimeTypeUtils.APPLICATION_JSON } : mimeTypes);
+        this.writer = mapper.writer();
+        for (var decision : PLAIN_DECISIONS) {
+            var encoded = Unpooled.unreleasableBuffer(
+                    Unpooled.directBuffer().writeBytes(writer.writeValueAsBytes(decision)).asReadOnly());
+            encodedPlainDecisions.put(decision, encoded);
+        }
+    }
+
+    @Override
+    public boolean canEncode(ResolvableType elementType, MimeType mimeType) {
+        return ENCODABLE_TYPES.contains(elementType.toClass()) && super.canEncode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+            ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+        return Flux.from(inputStream).map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints));
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+            MimeType mimeType, Map<String, Object> hints) {
+        var encoded = encodedPlainDecisions.get(value);
+        if (encoded != null) {
+            if (bufferFactory instanceof NettyDataBufferFactory nettyBufferFactory) {
+                return nettyBufferFactory.wrap(encoded.duplicate());
+            }
+            return bufferFactory.wrap(ByteBufUtil.getBytes(encoded));
+        }
+
+        var buffer = bufferFactory.allocateBuffer(INITIAL_BUFFER_SIZE);
+        try (var output = buffer.asOutputStream()) {
+            writer.writeValue(output, value);
+            return buffer;
+        } catch (IOException | RuntimeException e) {
+            DataBufferUtils.release(buffer);
+            throw new EncodingException("Could not encode " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    @Override
+    public List<MimeType> getEncodableMimeTypes(ResolvableType elementType) {
+        return ENCODABLE_TYPES.contains(elementType.toClass()) ? getEncodableMimeTypes() : List.of();
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.messaging.RSocketStrategiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.sapl.server.ce.config.BinaryEncodingConfiguration;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Registers the codecs for the decision payloads of the RSocket endpoint. The
+ * direct codecs take precedence over the generic Jackson codecs. The binary
+ * codecs for CBOR and Smile are appended, so they are only used by
+ * connections with the corresponding data MIME type. The CBOR codecs
+ * registered by Spring Boot are removed, so binary encodings are only
+ * accepted if enabled. As the customizer is not ordered, it is applied after
+ * the ones of Spring Boot.
+ */
+@Slf4j
+@Configuration
+public class RSocketCodecConfiguration {
+
+    @Value("${io.sapl.server.rsocket.directCodec:#{false}}")
+    private boolean directCodec;
+
+    @Value("${io.sapl.server.binaryEncoding.enabled:#{false}}")
+    private boolean binaryEncoding;
+
+    @Bean
+    RSocketStrategiesCustomizer decisionCodecsCustomizer(ObjectMapper mapper,
+            Jackson2ObjectMapperBuilder objectMapperBuilder) throws JsonProcessingException {
+        var cborMapper  = BinaryEncodingConfiguration.cborMapper(objectMapperBuilder);
+        var smileMapper = BinaryEncodingConfiguration.smileMapper(objectMapperBuilder);
+        var smile       = BinaryEncodingConfiguration.APPLICATION_SMILE;
+
+        var decoders = new SubscriptionDecoder[] { new SubscriptionDecoder(mapper),
+                new SubscriptionDecoder(cborMapper, MediaType.APPLICATION_CBOR),
+                new SubscriptionDecoder(smileMapper, smile) };
+        var encoders = new DecisionEncoder[] { new DecisionEncoder(mapper),
+                new DecisionEncoder(cborMapper, MediaType.APPLICATION_CBOR), new DecisionEncoder(smileMapper, smile) };
+        var codecs   = binaryEncoding ? decoders.length : 1;
+
+        return strategies -> {
+            strategies.decoders(list -> list.removeIf(
+                    decoder -> decoder instanceof Jackson2CborDecoder || decoder instanceof Jackson2SmileDecoder));
+            strategies.encoders(list -> list.removeIf(
+                    encoder -> encoder instanceof Jackson2CborEncoder || encoder instanceof Jackson2SmileEncoder));
+            if (directCodec) {
+                log.info("decoding and encoding RSocket decision payloads directly from and into Netty buffers");
+                strategies.decoders(list -> {
+                    for (var i = 0; i < codecs; i++) {
+                        list.add(i, decoders[i]);
+                    }
+                });
+                strategies.encoders(list -> {
+                    for (var i = 0; i < codecs; i++) {
+                        list.add(i, encoders[i]);
+                    }
+                });
+            }
+            if (binaryEncoding) {
+                log.info("accepting CBOR and Smile as data MIME types of RSocket connections");
+                strategies.decoder(new Jackson2CborDecoder(cborMapper), new Jackson2SmileDecoder(smileMapper));
+                strategies.encoder(new Jackson2CborEncoder(cborMapper), new Jackson2SmileEncoder(smileMapper));
+            }
+        };
+    }
+}
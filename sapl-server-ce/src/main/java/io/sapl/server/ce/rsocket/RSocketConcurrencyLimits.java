@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.rsocket.RSocket;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.Getter;
+import reactor.core.publisher.Mono;
+
+/**
+ * Limits the concurrent requests of RSocket clients. Active streams and
+ * in-flight request-response calls are capped per connection and per
+ * authenticated principal. Streams exceeding a cap are rejected, calls wait in
+ * a queue first. The number of waiting calls is limited for the whole server,
+ * and as a call waits for one permit at a time, each waiting call is counted
+ * once.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class RSocketConcurrencyLimits {
+
+    private static final String UNAUTHENTICATED = "";
+    private static final String STREAMS         = "streams";
+    private static final String CALLS           = "calls";
+
+    @Getter
+    private final boolean                     enabled;
+    private final int                         maxStreamsPerConnection;
+    private final int                         maxStreamsPerPrincipal;
+    private final int                         maxCallsPerConnection;
+    private final int                         maxCallsPerPrincipal;
+    private final int                         maxQueuedCalls;
+    private final AtomicInteger               queuedCalls = new AtomicInteger();
+    // streams never wait, so their queue stays empty
+    private final AtomicInteger               noQueue     = new AtomicInteger();
+    private final Counter                     rejectedStreams;
+    private final Counter                     rejectedCalls;
+    private final Cache<String, AsyncPermits> principalStreams;
+    private final Cache<String, AsyncPermits> principalCalls;
+
+    public RSocketConcurrencyLimits(@Value("${io.sapl.server.rsocket.limits.enabled:#{false}}") boolean enabled,
+            @Value("${io.sapl.server.rsocket.limits.maxStreamsPerConnection:#{1000}}") int maxStreamsPerConnection,
+            @Value("${io.sapl.server.rsocket.limits.maxStreamsPerPrincipal:#{10000}}") int maxStreamsPerPrincipal,
+            @Value("${io.sapl.server.rsocket.limits.maxCallsPerConnection:#{256}}") int maxCallsPerConnection,
+            @Value("${io.sapl.server.rsocket.limits.maxCallsPerPrincipal:#{1024}}") int maxCallsPerPrincipal,
+            @Value("${io.sapl.server.rsocket.limits.maxQueuedCalls:#{1000}}") int maxQueuedCalls,
+            MeterRegistry meterRegistry) {
+        this.enabled                 = enabled;
+        this.maxStreamsPerConnection = maxStreamsPerConnection;
+        this.maxStreamsPerPrincipal  = maxStreamsPerPrincipal;
+        this.maxCallsPerConnection   = maxCallsPerConnection;
+        this.maxCallsPerPrincipal    = maxCallsPerPrincipal;
+        this.maxQueuedCalls          = maxQueuedCalls;
+        this.rejectedStreams         = rejectedCounter(meterRegistry, STREAMS);
+        this.rejectedCalls           = rejectedCounter(meterRegistry, CALLS);
+        // permits of a principal are dropped once no request of the principal
+        // references them anymore
+        this.principalStreams        = Caffeine.newBuilder().weakValues().build();
+        this.principalCalls          = Caffeine.newBuilder().weakValues().build();
+        Gauge.builder("sapl.rsocket.queued", queuedCalls, AtomicInteger::get)
+                .description("RSocket request-response calls waiting for a permit").register(meterRegistry);
+    }
+
+    /**
+     * Wraps the responder of a connection, so that its requests are limited.
+     *
+     * @param responder the responder of a connection
+     * @return the limited responder
+     */
+    public RSocket limit(RSocket responder) {
+        if (!enabled) {
+            return responder;
+        }
+        var connectionStreams = new AsyncPermits(maxStreamsPerConnection, 0,
+                "Too many active streams on this connection", noQueue, rejectedStreams);
+        var connectionCalls   = new AsyncPermits(maxCallsPerConnection, maxQueuedCalls,
+                "Too many in-flight requests on this connection", queuedCalls, rejectedCalls);
+        return new ConcurrencyLimitingRSocket(responder, this, connectionStreams, connectionCalls);
+    }
+
+    Mono<AsyncPermits> principalStreams() {
+        return principal().map(principal -> principalStreams.get(principal, p -> new AsyncPermits(
+                maxStreamsPerPrincipal, 0, "Too many active streams of this client", noQueue, rejectedStreams)));
+    }
+
+    Mono<AsyncPermits> principalCalls() {
+        return principal().map(principal -> principalCalls.get(principal,
+                p -> new AsyncPermits(maxCallsPerPrincipal, maxQueuedCalls,
+                        "Too many in-flight requests of this client", queuedCalls, rejectedCalls)));
+    }
+
+    private static Mono<String> principal() {
+        return ReactiveSecurityContextHolder.getContext().map(SecurityContext::getAuthentication)
+                .map(Authentication::getName).defaultIfEmpty(UNAUTHENTICATED);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String type) {
+        return Counter.builder("sapl.rsocket.rejected").tag("type", type)
+                .description("RSocket requests rejected because of a concurrency limit").register(meterRegistry);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.rsocket.server.RSocketServerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import io.rsocket.lease.Lease;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+
+/**
+ * Configures flow control and concurrency limits of the RSocket server.
+ */
+@Slf4j
+@Configuration
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+public class RSocketFlowControlConfiguration {
+
+    @Value("${io.sapl.server.rsocket.lease.enabled:#{false}}")
+    private boolean leaseEnabled;
+    @Value("${io.sapl.server.rsocket.lease.ttl:#{5000}}")
+    private long    leaseTtl;
+    @Value("${io.sapl.server.rsocket.lease.requests:#{1000}}")
+    private int     leaseRequests;
+
+    private final RSocketConcurrencyLimits concurrencyLimits;
+
+    /**
+     * The limits must wrap the responder inside of the security interceptors, so
+     * that the authentication of a request is available. Socket acceptor
+     * interceptors registered first are applied innermost, hence the highest
+     * precedence.
+     */
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    RSocketServerCustomizer rSocketFlowControlCustomizer() {
+        return server -> {
+            if (concurrencyLimits.isEnabled()) {
+                log.info("limiting concurrent RSocket requests per connection and client");
+                server.interceptors(registry -> registry.forSocketAcceptor(
+                        acceptor -> (setup, requester) -> acceptor.accept(setup, requester)
+                                .map(concurrencyLimits::limit)));
+            }
+            if (leaseEnabled) {
+                log.info("granting RSocket leases of {} requests every {} ms", leaseRequests, leaseTtl);
+                var ttl = Duration.ofMillis(leaseTtl);
+                server.lease(spec -> spec
+                        .sender(() -> Flux.interval(Duration.ZERO, ttl).map(tick -> Lease.create(ttl, leaseRequests))));
+            }
+        };
+    }
+}
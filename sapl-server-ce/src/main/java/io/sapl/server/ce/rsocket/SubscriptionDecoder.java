@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.AbstractDecoder;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decodes authorization subscriptions directly from the Netty buffers of
+ * RSocket payloads. Heap buffers are parsed in place from their backing array,
+ * direct buffers are streamed to the parser without copying them into an
+ * intermediate {@code byte[]} or {@code String}.
+ */
+class SubscriptionDecoder extends AbstractDecoder<Object> {
+
+    private final Map<Class<?>, ObjectReader> readers;
+
+    SubscriptionDecoder(ObjectMapper mapper, MimeType... mimeTypes) {
+        super(mimeTypes.length == 0 ? new MimeType[] { MimeTypeUtils.APPLICATION_JSON } : mimeTypes);
+        this.readers = Map.of(AuthorizationSubscription.class, mapper.readerFor(AuthorizationSubscription.class),
+                MultiAuthorizationSubscription.class, mapper.readerFor(MultiAuthorizationSubscription.class));
+    }
+
+    @Override
+    public boolean canDecode(ResolvableType elementType, MimeType mimeType) {
+        return readers.containsKey(elementType.toClass()) && super.canDecode(elementType, mimeType);
+    }
+
+    @Override
+    public Flux<Object> decode(Publisher<DataBuffer> inputStream, ResolvableType elementType, MimeType mimeType,
+            Map<String, Object> hints) {
+        return Flux.from(inputStream).map(buffer -> decode(buffer, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Mono<Object> decodeToMono(Publisher<DataBuffer> inputStream, ResolvableType elementType,
+            MimeType mimeType, Map<String, Object> hints) {
+        return DataBufferUtils.join(inputStream).map(buffer -> decode(buffer, elementType, mimeType, hints));
+    }
+
+    @Override
+    public Object decode(DataBuffer buffer, ResolvableType targetType, MimeType mimeType, Map<String, Object> hints) {
+        var reader = readers.get(targetType.toClass());
+        try {
+            if (buffer instanceof NettyDataBuffer nettyBuffer) {
+                var byteBuf = nettyBuffer.getNativeBuffer();
+                if (byteBuf.hasArray()) {
+                    return reader.readValue(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(),
+                            byteBuf.readableBytes());
+                }
+                try (var input = new ByteBufInputStream(byteBuf)) {
+                    return reader.readValue(input);
+                }
+            }
+            try (var input = buffer.asInputStream()) {
+                return reader.readValue(input);
+            }
+        } catch (IOException e) {
+            throw new DecodingException("Invalid " + targetType.toClass().getSimpleName(), e);
+        } finally {
+            DataBufferUtils.release(buffer);
+        }
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes(ResolvableType targetType) {
+        return readers.containsKey(targetType.toClass()) ? getDecodableMimeTypes() : List.of();
+    }
+}
@@ -40,9 +40,13 @@ public class AuthenticationCacheConfig {
     @Value("${io.sapl.server.apiKeyCaching.maxSize:#{300}}")
     private Integer apiKeyCachingMaxSize;
 
+    /**
+     * Entries expire after a fixed time since their verification, so a revoked
+     * apiKey in continuous use is rejected at the latest after the expiration.
+     */
     @Bean
     Caffeine<Object, Object> caffeineConfig() {
-        return Caffeine.newBuilder().expireAfterAccess(apiKeyCachingExpireSeconds, TimeUnit.SECONDS).initialCapacity(10)
+        return Caffeine.newBuilder().expireAfterWrite(apiKeyCachingExpireSeconds, TimeUnit.SECONDS).initialCapacity(10)
                 .maximumSize(apiKeyCachingMaxSize);
     }
 
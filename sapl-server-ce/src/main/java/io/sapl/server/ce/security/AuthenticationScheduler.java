@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Executes blocking authentication work, i.e., repository lookups and password
+ * hashing, on a bounded dedicated scheduler instead of the event loop of the
+ * network endpoints. If more tasks are waiting than the configured queue size,
+ * further authentications are rejected immediately.
+ */
+@Slf4j
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class AuthenticationScheduler implements DisposableBean {
+
+    private final Scheduler     scheduler;
+    private final int           maxQueuedTasks;
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicInteger activeTasks = new AtomicInteger();
+    private final Counter       rejectedTasks;
+
+    public AuthenticationScheduler(@Value("${io.sapl.server.authenticationScheduler.threads:#{null}}") Integer threads,
+            @Value("${io.sapl.server.authenticationScheduler.queueSize:#{1000}}") int maxQueuedTasks,
+            MeterRegistry meterRegistry) {
+        // password hashing is CPU bound, by default use one thread per core
+        if (threads == null) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        this.scheduler      = Schedulers.newBoundedElastic(threads, maxQueuedTasks, "authentication");
+        this.maxQueuedTasks = maxQueuedTasks;
+        this.rejectedTasks  = Counter.builder("sapl.authentication.rejected")
+                .description("authentications rejected because the queue was full").register(meterRegistry);
+        Gauge.builder("sapl.authentication.queued", queuedTasks, AtomicInteger::get)
+                .description("authentications waiting for execution").register(meterRegistry);
+        Gauge.builder("sapl.authentication.active", activeTasks, AtomicInteger::get)
+                .description("authentications currently executed").register(meterRegistry);
+        log.info("executing blocking authentications on {} threads with a queue size of {}", threads, maxQueuedTasks);
+    }
+
+    /**
+     * Executes a blocking authentication task on the dedicated scheduler.
+     *
+     * @param <T>  the type of the result
+     * @param task the blocking task
+     * @return the result of the task, or an {@link AuthenticationServiceException}
+     *         if the queue is full
+     */
+    public <T> Mono<T> execute(Callable<T> task) {
+        return Mono.defer(() -> {
+            if (queuedTasks.incrementAndGet() > maxQueuedTasks) {
+                queuedTasks.decrementAndGet();
+                rejectedTasks.increment();
+                return Mono.error(new AuthenticationServiceException("Too many pending authentications"));
+            }
+
+            var dequeued = new AtomicBoolean();
+            return Mono.fromCallable(() -> {
+                dequeue(dequeued);
+                activeTasks.incrementAndGet();
+                try {
+                    return task.call();
+                } finally {
+                    activeTasks.decrementAndGet();
+                }
+            }).subscribeOn(scheduler).doFinally(signal -> dequeue(dequeued));
+        });
+    }
+
+    private void dequeue(AtomicBoolean dequeued) {
+        // a task cancelled before its execution is dequeued when finally signaled
+        if (dequeued.compareAndSet(false, true)) {
+            queuedTasks.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.dispose();
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.NonNull;
+
+/**
+ * Short-lived cache of successfully verified Basic credentials. Avoids running
+ * the expensive password hashing for each authentication of a client which
+ * reconnects or sends many requests.
+ * <p>
+ * Secrets are never stored. Each entry holds an HMAC-SHA256 of the verified
+ * secret keyed with a random key generated on startup, which is compared in
+ * constant time. The entries are keyed by the username, so they can be evicted
+ * directly when the credentials are deleted.
+ * <p>
+ * The cache is used for Basic authentication on HTTP and RSocket and is
+ * disabled by default.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class BasicAuthCache {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String CACHE_METRIC   = "sapl.authentication.basic.cache";
+
+    private record VerifiedCredentials(byte[] secretDigest, UserDetails userDetails) {}
+
+    private final boolean                            enabled;
+    private final Cache<String, VerifiedCredentials> verifiedCredentials;
+    private final SecretKeySpec                      digestKey;
+    private final Counter                            hits;
+    private final Counter                            misses;
+    private final AtomicLong                         revocationEpoch = new AtomicLong();
+
+    public BasicAuthCache(@Value("${io.sapl.server.basicAuthCaching.enabled:#{false}}") boolean enabled,
+            @Value("${io.sapl.server.basicAuthCaching.expire:#{300}}") Integer expireSeconds,
+            @Value("${io.sapl.server.basicAuthCaching.maxSize:#{10000}}") Integer maxSize,
+            MeterRegistry meterRegistry) {
+        this.enabled             = enabled;
+        this.verifiedCredentials = Caffeine.newBuilder().expireAfterWrite(Duration.ofSeconds(expireSeconds))
+                .maximumSize(maxSize).build();
+        this.hits                = Counter.builder(CACHE_METRIC).tag("result", "hit")
+                .description("Basic authentications served from the cache").register(meterRegistry);
+        this.misses              = Counter.builder(CACHE_METRIC).tag("result", "miss")
+                .description("Basic authentications not found in the cache").register(meterRegistry);
+        meterRegistry.gauge(CACHE_METRIC + ".size", verifiedCredentials, Cache::estimatedSize);
+        var key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.digestKey = new SecretKeySpec(key, HMAC_ALGORITHM);
+    }
+
+    /**
+     * Gets the user details of previously verified credentials.
+     *
+     * @param username the username
+     * @param secret   the raw secret
+     * @return the user details or null if the credentials have not been verified
+     *         recently
+     */
+    public UserDetails getVerified(@NonNull String username, @NonNull String secret) {
+        if (!enabled) {
+            return null;
+        }
+
+        var cached = verifiedCredentials.getIfPresent(username);
+        if (cached == null || !MessageDigest.isEqual(cached.secretDigest(), digest(secret))) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return cached.userDetails();
+    }
+
+    /**
+     * Gets the current revocation epoch, which is incremented on each eviction.
+     * It has to be read before the credentials are loaded for verification.
+     *
+     * @return the revocation epoch
+     */
+    public long getRevocationEpoch() {
+        return revocationEpoch.get();
+    }
+
+    /**
+     * Caches successfully verified credentials. If credentials have been evicted
+     * since the verification started, the verified credentials may have been
+     * revoked and are not cached.
+     *
+     * @param secret      the raw verified secret
+     * @param userDetails the user details of the verified credentials
+     * @param epoch       the revocation epoch read before the verification
+     */
+    public void putVerified(@NonNull String secret, @NonNull UserDetails userDetails, long epoch) {
+        if (enabled) {
+            var username = userDetails.getUsername();
+            verifiedCredentials.put(username, new VerifiedCredentials(digest(secret), userDetails));
+            if (revocationEpoch.get() != epoch) {
+                verifiedCredentials.invalidate(username);
+            }
+        }
+    }
+
+    /**
+     * Evicts the credentials of a user, e.g., when the credentials are deleted.
+     *
+     * @param username the username
+     */
+    public void evict(@NonNull String username) {
+        revocationEpoch.incrementAndGet();
+        verifiedCredentials.invalidate(username);
+    }
+
+    private byte[] digest(String secret) {
+        try {
+            var mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(digestKey);
+            return mac.doFinal(secret.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
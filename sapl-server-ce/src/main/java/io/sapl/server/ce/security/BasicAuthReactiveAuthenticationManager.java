@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security;
+
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.ReactiveAuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactive authentication manager for Basic credentials. Recently verified
+ * credentials are taken from the {@link BasicAuthCache}. All other credentials
+ * are looked up and verified on the {@link AuthenticationScheduler}, so the
+ * blocking repository access and the password hashing do not run on the event
+ * loop.
+ */
+@RequiredArgsConstructor
+public class BasicAuthReactiveAuthenticationManager implements ReactiveAuthenticationManager {
+
+    private final UserDetailsService      userDetailsService;
+    private final PasswordEncoder         passwordEncoder;
+    private final BasicAuthCache          basicAuthCache;
+    private final AuthenticationScheduler authenticationScheduler;
+
+    @Override
+    public Mono<Authentication> authenticate(Authentication authentication) {
+        var username = authentication.getName();
+        var secret   = (String) authentication.getCredentials();
+        if (username == null || secret == null) {
+            return Mono.error(new BadCredentialsException("Invalid Credentials"));
+        }
+
+        var verifiedUser = basicAuthCache.getVerified(username, secret);
+        if (verifiedUser != null) {
+            return Mono.just(authenticated(verifiedUser));
+        }
+
+        var epoch = basicAuthCache.getRevocationEpoch();
+        return authenticationScheduler.execute(() -> {
+            UserDetails user;
+            try {
+                user = userDetailsService.loadUserByUsername(username);
+            } catch (UsernameNotFoundException e) {
+                throw new BadCredentialsException("Invalid Credentials", e);
+            }
+            if (!passwordEncoder.matches(secret, user.getPassword())) {
+                throw new BadCredentialsException("Invalid Credentials");
+            }
+            basicAuthCache.putVerified(secret, user, epoch);
+            return authenticated(user);
+        });
+    }
+
+    private static Authentication authenticated(UserDetails user) {
+        return UsernamePasswordAuthenticationToken.authenticated(user, user.getPassword(), user.getAuthorities());
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security;
+
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/**
+ * Authentication provider for Basic authentication on the HTTP API. Recently
+ * verified credentials are taken from the {@link BasicAuthCache}, all other
+ * credentials are verified by the {@link DaoAuthenticationProvider}.
+ */
+public class CachingBasicAuthenticationProvider extends DaoAuthenticationProvider {
+
+    private final BasicAuthCache basicAuthCache;
+
+    public CachingBasicAuthenticationProvider(UserDetailsService userDetailsService,
+            PasswordEncoder passwordEncoder, BasicAuthCache basicAuthCache) {
+        setPasswordEncoder(passwordEncoder);
+        setUserDetailsService(userDetailsService);
+        this.basicAuthCache = basicAuthCache;
+    }
+
+    @Override
+    public Authentication authenticate(Authentication authentication) throws AuthenticationException {
+        var username = authentication.getName();
+        if (username != null && authentication.getCredentials() instanceof String secret) {
+            var verifiedUser = basicAuthCache.getVerified(username, secret);
+            if (verifiedUser != null) {
+                return createSuccessAuthentication(verifiedUser, authentication, verifiedUser);
+            }
+
+            var epoch  = basicAuthCache.getRevocationEpoch();
+            var result = super.authenticate(authentication);
+            if (result.getPrincipal() instanceof UserDetails user) {
+                basicAuthCache.putVerified(secret, user, epoch);
+            }
+            return result;
+        }
+        return super.authenticate(authentication);
+    }
+}
@@ -33,8 +33,12 @@ import com.heutelbeck.uuid.Base64Id;
 import io.sapl.server.ce.model.clients.AuthType;
 import io.sapl.server.ce.model.clients.ClientCredentials;
 import io.sapl.server.ce.model.clients.ClientCredentialsRepository;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeLog;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeType;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import io.sapl.server.ce.security.apikey.ApiKeySecretEncoder;
 import io.sapl.server.ce.security.apikey.ApiKeyService;
+import io.sapl.server.ce.security.ratelimit.ClientRateLimits;
 import jakarta.annotation.PostConstruct;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
@@ -48,9 +52,12 @@ import reactor.util.function.Tuples;
 @Conditional(SetupFinishedCondition.class)
 public class ClientDetailsService implements UserDetailsService {
 
-    public static final String  CLIENT = "SAPL_CLIENT";
-    public static final String  ADMIN  = "ADMIN";
-    private final ApiKeyService apiKeyService;
+    public static final String   CLIENT = "SAPL_CLIENT";
+    public static final String   ADMIN  = "ADMIN";
+    private final ApiKeyService  apiKeyService;
+    private final BasicAuthCache basicAuthCache;
+
+    private final ConfigurationChangeLog configurationChangeLog;
 
     @Value("${io.sapl.server.accesscontrol.admin-username:#{null}}")
     private String                            adminUsername;
@@ -58,6 +65,8 @@ public class ClientDetailsService implements UserDetailsService {
     private String                            encodedAdminPassword;
     private final ClientCredentialsRepository clientCredentialsRepository;
     private final PasswordEncoder             passwordEncoder;
+    private final ApiKeySecretEncoder         apiKeySecretEncoder;
+    private final ClientRateLimits            clientRateLimits;
 
     @PostConstruct
     void validateSecuritySettings() {
@@ -119,15 +128,55 @@ public class ClientDetailsService implements UserDetailsService {
         // the authentication process. We need to avoid underscores in the key value.
         var key    = Base64Id.randomID().replace('_', '-');
         var apiKey = "sapl_" + key + "_" + generateSecret();
-        clientCredentialsRepository.save(new ClientCredentials(key, AuthType.APIKEY, encodeSecret(apiKey)));
+        clientCredentialsRepository
+                .save(new ClientCredentials(key, AuthType.APIKEY, apiKeySecretEncoder.encode(apiKey)));
         return apiKey;
     }
 
     public void delete(@NonNull ClientCredentials clientCredential) {
         clientCredentialsRepository.deleteById(clientCredential.getId());
-        if (clientCredential.getAuthType().equals(AuthType.APIKEY)) {
-            apiKeyService.removeFromCache(clientCredential.getKey());
+        configurationChangeLog.record(ConfigurationChangeType.CLIENT_CREDENTIALS, clientCredential.getKey());
+        evictCachedCredentials(clientCredential.getKey());
+    }
+
+    /**
+     * Sets the rate limit of a client. Only the rate limit is written, so
+     * concurrent changes of the other columns, e.g., an upgraded encoding of the
+     * secret, are kept.
+     *
+     * @param clientCredential the credentials of the client
+     * @param rateLimit        the maximum number of requests per rate limiting
+     *                         period, or null to apply the default quota
+     */
+    public void setRateLimit(@NonNull ClientCredentials clientCredential, Integer rateLimit) {
+        if (rateLimit != null && rateLimit < 0) {
+            throw new IllegalArgumentException("The rate limit must not be negative.");
         }
+        clientCredentialsRepository.updateRateLimit(clientCredential.getKey(), rateLimit);
+        clientCredential.setRateLimit(rateLimit);
+        configurationChangeLog.record(ConfigurationChangeType.RATE_LIMIT, clientCredential.getKey());
+        evictRateLimit(clientCredential.getKey());
+    }
+
+    /**
+     * Evicts the cached quota of a client, e.g., after its rate limit has been
+     * changed on another instance.
+     *
+     * @param key the client key
+     */
+    public void evictRateLimit(@NonNull String key) {
+        clientRateLimits.evictQuota(key);
+    }
+
+    /**
+     * Evicts all cached verifications of the credentials of a client, e.g., after
+     * the credentials have been deleted on another instance.
+     *
+     * @param key the client key
+     */
+    public void evictCachedCredentials(@NonNull String key) {
+        apiKeyService.removeFromCache(key);
+        basicAuthCache.evict(key);
     }
 
     public String encodeSecret(@NonNull String secret) {
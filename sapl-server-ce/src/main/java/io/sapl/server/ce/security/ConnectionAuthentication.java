@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.core.Ordered;
+import org.springframework.security.config.annotation.rsocket.PayloadInterceptorOrder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+import org.springframework.security.rsocket.api.PayloadExchange;
+import org.springframework.security.rsocket.api.PayloadExchangeType;
+import org.springframework.security.rsocket.api.PayloadInterceptor;
+import org.springframework.security.rsocket.api.PayloadInterceptorChain;
+import org.springframework.security.rsocket.authentication.PayloadExchangeAuthenticationConverter;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.NonNull;
+import reactor.core.publisher.Mono;
+
+/**
+ * Authenticates RSocket connections once instead of for each payload exchange.
+ * <p>
+ * On SETUP, a holder for the authentication of the connection is added to the
+ * context, which Spring Security keeps for all later exchanges of the
+ * connection. The first successful authentication of the connection, either at
+ * SETUP or with the first request, is stored in the holder. Later requests
+ * reuse it and skip the metadata parsing and credential lookup of the wrapped
+ * converters. Expired OAuth2 tokens are not reused, and the stored
+ * authentication is only replaced by the next successful authentication once
+ * it is no longer reusable.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class ConnectionAuthentication {
+
+    private static final String AUTHENTICATIONS_METRIC = "sapl.rsocket.authentications";
+
+    private final boolean enabled;
+    private final Counter connections;
+    private final Counter performedAuthentications;
+    private final Counter reusedAuthentications;
+
+    public ConnectionAuthentication(
+            @Value("${io.sapl.server.rsocket.reuseConnectionAuthentication:#{false}}") boolean enabled,
+            MeterRegistry meterRegistry) {
+        this.enabled                  = enabled;
+        this.connections              = Counter.builder("sapl.rsocket.connections")
+                .description("Accepted RSocket connections").register(meterRegistry);
+        this.performedAuthentications = Counter.builder(AUTHENTICATIONS_METRIC).tag("result", "performed")
+                .description("Authentications of RSocket payload exchanges").register(meterRegistry);
+        this.reusedAuthentications    = Counter.builder(AUTHENTICATIONS_METRIC).tag("result", "reused")
+                .description("RSocket payload exchanges using the authentication of the connection")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Holder of the authentication of one connection.
+     */
+    private static final class ConnectionAuthenticationHolder extends AtomicReference<Authentication> {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * @return the interceptor which adds the holder to the context on SETUP and
+     *         applies the authentication of the connection to later requests. It
+     *         runs before the authentication interceptors.
+     */
+    public PayloadInterceptor connectionInterceptor() {
+        return new OrderedPayloadInterceptor(PayloadInterceptorOrder.AUTHENTICATION.getOrder() - 1) {
+            @Override
+            public Mono<Void> intercept(PayloadExchange exchange, PayloadInterceptorChain chain) {
+                if (exchange.getType() == PayloadExchangeType.SETUP) {
+                    connections.increment();
+                    return chain.next(exchange)
+                            .contextWrite(ctx -> ctx.put(ConnectionAuthenticationHolder.class,
+                                    new ConnectionAuthenticationHolder()));
+                }
+                return Mono.deferContextual(ctx -> {
+                    var authentication = ctx.<ConnectionAuthenticationHolder>getOrEmpty(
+                            ConnectionAuthenticationHolder.class).map(AtomicReference::get)
+                            .filter(ConnectionAuthentication.this::isReusable);
+                    if (authentication.isEmpty()) {
+                        return chain.next(exchange);
+                    }
+                    reusedAuthentications.increment();
+                    return chain.next(exchange)
+                            .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication.get()));
+                });
+            }
+        };
+    }
+
+    /**
+     * @return the interceptor which stores the first successful authentication of
+     *         a connection in its holder and counts the authentications which
+     *         have not been reused. It runs after the authentication
+     *         interceptors.
+     */
+    public PayloadInterceptor recordingInterceptor() {
+        return new OrderedPayloadInterceptor(PayloadInterceptorOrder.AUTHENTICATION.getOrder() + 1) {
+            @Override
+            public Mono<Void> intercept(PayloadExchange exchange, PayloadInterceptorChain chain) {
+                return Mono.deferContextual(ctx -> {
+                    var holder = ctx.<ConnectionAuthenticationHolder>getOrEmpty(
+                            ConnectionAuthenticationHolder.class);
+                    if (holder.isEmpty()) {
+                        return chain.next(exchange);
+                    }
+                    return ReactiveSecurityContextHolder.getContext().map(SecurityContext::getAuthentication)
+                            .doOnNext(authentication -> record(holder.get(), authentication))
+                            .then(chain.next(exchange));
+                });
+            }
+        };
+    }
+
+    /**
+     * Wraps a converter so that it is skipped for requests on connections with a
+     * reusable authentication.
+     *
+     * @param converter the converter of an authentication method
+     * @return the wrapped converter
+     */
+    public PayloadExchangeAuthenticationConverter reuseFor(@NonNull PayloadExchangeAuthenticationConverter converter) {
+        if (!enabled) {
+            return converter;
+        }
+        return exchange -> Mono.deferContextual(ctx -> {
+            if (exchange.getType() != PayloadExchangeType.SETUP
+                    && ctx.<ConnectionAuthenticationHolder>getOrEmpty(ConnectionAuthenticationHolder.class)
+                            .map(AtomicReference::get).filter(this::isReusable).isPresent()) {
+                return Mono.empty();
+            }
+            return converter.convert(exchange);
+        });
+    }
+
+    private void record(ConnectionAuthenticationHolder holder, Authentication authentication) {
+        var stored = holder.get();
+        if (stored == authentication) {
+            return;
+        }
+        performedAuthentications.increment();
+        if (!isReusable(stored)) {
+            holder.compareAndSet(stored, authentication);
+        }
+    }
+
+    private boolean isReusable(Authentication authentication) {
+        if (!enabled || authentication == null || !authentication.isAuthenticated()) {
+            return false;
+        }
+        if (authentication instanceof AbstractOAuth2TokenAuthenticationToken<?> tokenAuthentication) {
+            var expiresAt = tokenAuthentication.getToken().getExpiresAt();
+            return expiresAt == null || Instant.now().isBefore(expiresAt);
+        }
+        return true;
+    }
+
+    private abstract static class OrderedPayloadInterceptor implements PayloadInterceptor, Ordered {
+        private final int order;
+
+        OrderedPayloadInterceptor(int order) {
+            this.order = order;
+        }
+
+        @Override
+        public int getOrder() {
+            return order;
+        }
+    }
+}
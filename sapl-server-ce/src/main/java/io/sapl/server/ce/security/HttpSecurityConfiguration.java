@@ -21,6 +21,9 @@ import com.vaadin.flow.spring.security.VaadinWebSecurity;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
 import io.sapl.server.ce.security.apikey.ApiKeyHeaderAuthFilterService;
 import io.sapl.server.ce.security.apikey.ApiKeyService;
+import io.sapl.server.ce.security.jwt.JwtDecoderProvider;
+import io.sapl.server.ce.security.ratelimit.ClientRateLimits;
+import io.sapl.server.ce.security.ratelimit.RateLimitFilter;
 import io.sapl.server.ce.ui.views.login.LoginView;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -33,6 +36,7 @@ import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.ObjectPostProcessor;
+import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
@@ -40,15 +44,17 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.authority.mapping.GrantedAuthoritiesMapper;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
 import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
 import org.springframework.security.oauth2.core.user.OAuth2UserAuthority;
 import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.JwtDecoders;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
 import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.header.HeaderWriterFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
@@ -79,6 +85,11 @@ public class HttpSecurityConfiguration extends VaadinWebSecurity {
     private boolean allowOAuth2Login;
 
     private final ApiKeyHeaderAuthFilterService apiKeyAuthenticationFilterService;
+    private final UserDetailsService            userDetailsService;
+    private final PasswordEncoder               passwordEncoder;
+    private final BasicAuthCache                basicAuthCache;
+    private final JwtDecoderProvider            jwtDecoderProvider;
+    private final ClientRateLimits              clientRateLimits;
 
     private static final String GROUPS             = "groups";
     private static final String REALM_ACCESS_CLAIM = "realm_access";
@@ -86,12 +97,13 @@ public class HttpSecurityConfiguration extends VaadinWebSecurity {
 
     /**
      * Decodes JSON Web Token (JWT) according to the configuration that was
-     * initialized by the OpenID Provider specified in the jwtIssuerURI.
+     * initialized by the OpenID Provider specified in the jwtIssuerURI. Validated
+     * tokens are cached, see {@link JwtDecoderProvider}.
      */
     @Bean
     JwtDecoder jwtDecoder() {
         if (allowOauth2Auth) {
-            return JwtDecoders.fromIssuerLocation(jwtIssuerURI);
+            return jwtDecoderProvider.jwtDecoder();
         } else {
             return null;
         }
@@ -157,6 +169,10 @@ public class HttpSecurityConfiguration extends VaadinWebSecurity {
 		}
 
         if (allowBasicAuth){
+            // verify Basic credentials with the cache of verified credentials only. Without a parent
+            // authentication manager, failed credentials are not hashed a second time.
+            http.getSharedObject(AuthenticationManagerBuilder.class).parentAuthenticationManager(null);
+            http.authenticationProvider(new CachingBasicAuthenticationProvider(userDetailsService, passwordEncoder, basicAuthCache));
             http.httpBasic(withDefaults()); // offer basic authentication
         }
 
@@ -172,6 +188,15 @@ public class HttpSecurityConfiguration extends VaadinWebSecurity {
                     .authorizeHttpRequests(authorize -> authorize.requestMatchers("/unauthenticated", "/oauth2/**", "/login/**", "/VAADIN/push/**").permitAll());
         }
 
+        // limit the requests per authenticated client
+        if (clientRateLimits.isEnabled()) {
+            http.addFilterBefore(new RateLimitFilter(clientRateLimits), AuthorizationFilter.class);
+        }
+
+        // the administrative API requires the ADMIN role
+        http.authorizeHttpRequests(authz -> authz.requestMatchers(new AntPathRequestMatcher("/api/admin/**"))
+                .hasRole(ClientDetailsService.ADMIN));
+
         // all requests to this end point require the CLIENT role
         http.authorizeHttpRequests(authz -> authz.anyRequest().hasAnyAuthority(ClientDetailsService.CLIENT));
 
@@ -22,7 +22,6 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.ReactiveAuthenticationManager;
-import org.springframework.security.authentication.UserDetailsRepositoryReactiveAuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.rsocket.EnableRSocketSecurity;
@@ -30,7 +29,6 @@ import org.springframework.security.config.annotation.rsocket.PayloadInterceptor
 import org.springframework.security.config.annotation.rsocket.RSocketSecurity;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
-import org.springframework.security.oauth2.jwt.ReactiveJwtDecoders;
 import org.springframework.security.oauth2.server.resource.authentication.BearerTokenAuthenticationToken;
 import org.springframework.security.oauth2.server.resource.authentication.JwtReactiveAuthenticationManager;
 import org.springframework.security.rsocket.authentication.AuthenticationPayloadExchangeConverter;
@@ -40,9 +38,11 @@ import org.springframework.security.rsocket.core.PayloadSocketAcceptorIntercepto
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
 import io.sapl.server.ce.security.apikey.ApiKeyPayloadExchangeAuthenticationConverterService;
 import io.sapl.server.ce.security.apikey.ApiKeyReactiveAuthenticationManager;
+import io.sapl.server.ce.security.jwt.JwtDecoderProvider;
+import io.sapl.server.ce.security.ratelimit.ClientRateLimits;
+import io.sapl.server.ce.security.ratelimit.RateLimitPayloadInterceptor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import reactor.core.publisher.Mono;
 
 @Slf4j
 @Configuration
@@ -65,6 +65,11 @@ public class RSocketSecurityConfig {
 
     private final PasswordEncoder                                     passwordEncoder;
     private final ApiKeyPayloadExchangeAuthenticationConverterService apiKeyPayloadExchangeAuthenticationConverterService;
+    private final BasicAuthCache                                      basicAuthCache;
+    private final AuthenticationScheduler                             authenticationScheduler;
+    private final ConnectionAuthentication                            connectionAuthentication;
+    private final JwtDecoderProvider                                  jwtDecoderProvider;
+    private final ClientRateLimits                                    clientRateLimits;
 
     private static void customize(RSocketSecurity.AuthorizePayloadsSpec spec) {
         spec.anyRequest().authenticated().anyExchange().permitAll();
@@ -81,24 +86,23 @@ public class RSocketSecurityConfig {
         security = security.authorizePayload(RSocketSecurityConfig::customize);
 
         // Configure Basic Authentication
-        UserDetailsRepositoryReactiveAuthenticationManager simpleManager = null;
+        BasicAuthReactiveAuthenticationManager simpleManager = null;
         if (allowBasicAuth) {
             log.info("configuring BasicAuth for RSocket authentication");
-            simpleManager = new UserDetailsRepositoryReactiveAuthenticationManager(
-                    username -> Mono.just(userDetailsService.loadUserByUsername(username)));
-            simpleManager.setPasswordEncoder(passwordEncoder);
+            simpleManager = new BasicAuthReactiveAuthenticationManager(userDetailsService, passwordEncoder,
+                    basicAuthCache, authenticationScheduler);
         }
 
         // Configure Oauth2 Authentication
         JwtReactiveAuthenticationManager jwtManager = null;
         if (allowOauth2Auth) {
             log.info("configuring Oauth2 authentication with jwtIssuerURI: " + jwtIssuerURI);
-            jwtManager = new JwtReactiveAuthenticationManager(ReactiveJwtDecoders.fromIssuerLocation(jwtIssuerURI));
+            jwtManager = new JwtReactiveAuthenticationManager(jwtDecoderProvider.reactiveJwtDecoder());
         }
 
-        UserDetailsRepositoryReactiveAuthenticationManager finalSimpleManager = simpleManager;
-        JwtReactiveAuthenticationManager                   finalJwtManager    = jwtManager;
-        AuthenticationPayloadInterceptor                   auth               = new AuthenticationPayloadInterceptor(
+        BasicAuthReactiveAuthenticationManager finalSimpleManager = simpleManager;
+        JwtReactiveAuthenticationManager       finalJwtManager    = jwtManager;
+        AuthenticationPayloadInterceptor       auth               = new AuthenticationPayloadInterceptor(
                 a -> {
                                                                                           if (finalSimpleManager != null
                                                                                                   && a instanceof UsernamePasswordAuthenticationToken) {
@@ -115,7 +119,8 @@ public class RSocketSecurityConfig {
                                                                                                                       .getSimpleName());
                                                                                           }
                                                                                       });
-        auth.setAuthenticationConverter(new AuthenticationPayloadExchangeConverter());
+        auth.setAuthenticationConverter(
+                connectionAuthentication.reuseFor(new AuthenticationPayloadExchangeConverter()));
         auth.setOrder(PayloadInterceptorOrder.AUTHENTICATION.getOrder());
         security.addPayloadInterceptor(auth);
 
@@ -124,11 +129,21 @@ public class RSocketSecurityConfig {
             log.info("configuring ApiKey for RSocket authentication");
             ReactiveAuthenticationManager    manager           = new ApiKeyReactiveAuthenticationManager();
             AuthenticationPayloadInterceptor apikeyInterceptor = new AuthenticationPayloadInterceptor(manager);
-            apikeyInterceptor.setAuthenticationConverter(apiKeyPayloadExchangeAuthenticationConverterService);
+            apikeyInterceptor.setAuthenticationConverter(
+                    connectionAuthentication.reuseFor(apiKeyPayloadExchangeAuthenticationConverterService));
             apikeyInterceptor.setOrder(PayloadInterceptorOrder.AUTHENTICATION.getOrder());
             security.addPayloadInterceptor(apikeyInterceptor);
         }
 
+        // Authenticate connections once and reuse the authentication for later requests
+        security.addPayloadInterceptor(connectionAuthentication.connectionInterceptor());
+        security.addPayloadInterceptor(connectionAuthentication.recordingInterceptor());
+
+        // Limit the requests per authenticated client
+        if (clientRateLimits.isEnabled()) {
+            security.addPayloadInterceptor(new RateLimitPayloadInterceptor(clientRateLimits));
+        }
+
         return security.build();
 
     }
@@ -18,15 +18,14 @@
 package io.sapl.server.ce.security.apikey;
 
 import io.netty.buffer.ByteBuf;
-import io.rsocket.metadata.CompositeMetadata;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import io.sapl.server.ce.security.AuthenticationScheduler;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.rsocket.api.PayloadExchange;
 import org.springframework.security.rsocket.authentication.PayloadExchangeAuthenticationConverter;
 import org.springframework.stereotype.Component;
-import org.springframework.util.MimeType;
 import reactor.core.publisher.Mono;
 import java.nio.charset.StandardCharsets;
 
@@ -36,24 +35,82 @@ import static io.sapl.server.ce.security.apikey.ApiKeyService.RSOCKET_METADATA_M
 @RequiredArgsConstructor
 @Conditional(SetupFinishedCondition.class)
 public class ApiKeyPayloadExchangeAuthenticationConverterService implements PayloadExchangeAuthenticationConverter {
-    private final ApiKeyService apiKeyService;
+    private static final byte[] API_KEY_MIME_TYPE = RSOCKET_METADATA_MIME_TPYE.getBytes(StandardCharsets.US_ASCII);
+
+    private static final int WELL_KNOWN_MIME_TYPE_FLAG = 0x80;
+    private static final int MIME_TYPE_LENGTH_MASK     = 0x7F;
+    private static final int CONTENT_LENGTH_BYTES      = 3;
+
+    private final ApiKeyService           apiKeyService;
+    private final AuthenticationScheduler authenticationScheduler;
 
     /**
      * This Method enabled the Api-Key authentication for RSocket requests. Api
      * tokens are recognized when a Metadata field with the mime type
-     * "messaging/Bearer" is presented.
+     * "messaging/Bearer" is presented. Cached tokens are returned directly, all
+     * other tokens are verified on the {@link AuthenticationScheduler} to keep
+     * the blocking lookup and hashing off the event loop.
      */
     @Override
     public Mono<Authentication> convert(PayloadExchange exchange) {
-        var               apiKeyMimeTypeValue = String.valueOf(MimeType.valueOf(RSOCKET_METADATA_MIME_TPYE));
-        ByteBuf           metadata            = exchange.getPayload().metadata();
-        CompositeMetadata compositeMetadata   = new CompositeMetadata(metadata, false);
-        for (CompositeMetadata.Entry entry : compositeMetadata) {
-            if (apiKeyMimeTypeValue.equals(entry.getMimeType())) {
-                String apikey = entry.getContent().toString(StandardCharsets.UTF_8);
-                return Mono.just(apiKeyService.checkApiKey(apikey));
+        var apikey = findApiKey(exchange.getPayload().metadata());
+        if (apikey == null) {
+            return Mono.empty();
+        }
+        var cachedToken = apiKeyService.getCachedApiKeyToken(apikey);
+        if (cachedToken != null) {
+            return Mono.just(cachedToken);
+        }
+        return authenticationScheduler.execute(() -> apiKeyService.checkApiKey(apikey));
+    }
+
+    /**
+     * Finds the apiKey in composite metadata. The entry headers are read in place
+     * and only compared with the precomputed mime type, so no entry objects and
+     * mime type strings are created for each payload.
+     *
+     * @param metadata the composite metadata
+     * @return the apiKey or null if the metadata contains no apiKey
+     */
+    static String findApiKey(ByteBuf metadata) {
+        var index = metadata.readerIndex();
+        var end   = metadata.writerIndex();
+        while (index < end) {
+            var header   = metadata.getUnsignedByte(index++);
+            var isApiKey = false;
+            if ((header & WELL_KNOWN_MIME_TYPE_FLAG) == 0) {
+                var mimeTypeLength = (header & MIME_TYPE_LENGTH_MASK) + 1;
+                if (index + mimeTypeLength > end) {
+                    return null;
+                }
+                isApiKey = matchesApiKeyMimeType(metadata, index, mimeTypeLength);
+                index += mimeTypeLength;
+            }
+            if (index + CONTENT_LENGTH_BYTES > end) {
+                return null;
+            }
+            var contentLength = metadata.getUnsignedMedium(index);
+            index += CONTENT_LENGTH_BYTES;
+            if (index + contentLength > end) {
+                return null;
+            }
+            if (isApiKey) {
+                return metadata.toString(index, contentLength, StandardCharsets.UTF_8);
+            }
+            index += contentLength;
+        }
+        return null;
+    }
+
+    private static boolean matchesApiKeyMimeType(ByteBuf metadata, int index, int length) {
+        if (length != API_KEY_MIME_TYPE.length) {
+            return false;
+        }
+        for (var i = 0; i < length; i++) {
+            if (metadata.getByte(index + i) != API_KEY_MIME_TYPE[i]) {
+                return false;
             }
         }
-        return Mono.empty();
+        return true;
     }
 }
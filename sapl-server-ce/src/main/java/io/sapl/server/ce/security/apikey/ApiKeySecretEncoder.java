@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.apikey;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import jakarta.annotation.PostConstruct;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Encodes and verifies the secrets of API keys.
+ * <p>
+ * API keys contain 256 random bits, so key stretching adds no security. If the
+ * HMAC mode is enabled, new API keys are stored as HMAC-SHA256 keyed with a
+ * server-side pepper, which is verified in microseconds instead of the tens of
+ * milliseconds required by Argon2. API keys encoded with the
+ * {@link PasswordEncoder} are still accepted and can optionally be re-encoded
+ * on their next successful verification.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@Conditional(SetupFinishedCondition.class)
+public class ApiKeySecretEncoder {
+
+    static final String HMAC_PREFIX    = "{hmac-sha256}";
+    static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private static final int MIN_PEPPER_LENGTH = 32;
+
+    private final PasswordEncoder passwordEncoder;
+
+    @Value("${io.sapl.server.apiKeyHmac.enabled:#{false}}")
+    private boolean hmacEnabled;
+
+    @Value("${io.sapl.server.apiKeyHmac.pepper:#{null}}")
+    private String pepper;
+
+    @Value("${io.sapl.server.apiKeyHmac.upgradeExisting:#{false}}")
+    private boolean upgradeExisting;
+
+    private SecretKeySpec pepperKey;
+
+    @PostConstruct
+    void validateSettings() {
+        if (StringUtils.isNotBlank(pepper)) {
+            if (pepper.length() < MIN_PEPPER_LENGTH) {
+                log.warn("Pepper for API keys is shorter than {} characters.", MIN_PEPPER_LENGTH);
+            }
+            pepperKey = new SecretKeySpec(pepper.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        } else if (hmacEnabled) {
+            log.error(
+                    "Pepper for API keys undefined. To define the pepper, specify it in the property 'io.sapl.server.apiKeyHmac.pepper'.");
+            throw new IllegalStateException("Pepper for API keys missing.");
+        }
+    }
+
+    /**
+     * Encodes the secret of a new API key.
+     *
+     * @param apiKey the raw API key
+     * @return the encoded API key
+     */
+    public String encode(@NonNull String apiKey) {
+        if (hmacEnabled) {
+            return HMAC_PREFIX + Base64.getEncoder().encodeToString(hmac(apiKey));
+        }
+        return passwordEncoder.encode(apiKey);
+    }
+
+    /**
+     * Verifies an API key.
+     *
+     * @param apiKey        the raw API key
+     * @param encodedApiKey the stored encoded API key
+     * @return true if the API key matches the encoded API key
+     */
+    public boolean matches(@NonNull String apiKey, String encodedApiKey) {
+        if (encodedApiKey == null) {
+            return false;
+        }
+        if (!encodedApiKey.startsWith(HMAC_PREFIX)) {
+            return passwordEncoder.matches(apiKey, encodedApiKey);
+        }
+        if (pepperKey == null) {
+            log.warn("API key encoded with HMAC, but no pepper is configured");
+            return false;
+        }
+
+        byte[] expected;
+        try {
+            expected = Base64.getDecoder().decode(encodedApiKey.substring(HMAC_PREFIX.length()));
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, hmac(apiKey));
+    }
+
+    /**
+     * @param encodedApiKey the stored encoded API key
+     * @return true if the API key should be encoded again after a successful
+     *         verification
+     */
+    public boolean upgradeEncoding(@NonNull String encodedApiKey) {
+        return hmacEnabled && upgradeExisting && !encodedApiKey.startsWith(HMAC_PREFIX);
+    }
+
+    private byte[] hmac(String apiKey) {
+        try {
+            var mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(pepperKey);
+            return mac.doFinal(apiKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+}
@@ -17,48 +17,77 @@
  */
 package io.sapl.server.ce.security.apikey;
 
+import com.google.common.hash.Hashing;
 import io.sapl.server.ce.model.clients.AuthType;
 import io.sapl.server.ce.model.clients.ClientCredentialsRepository;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.caffeine.CaffeineCache;
 import org.springframework.context.annotation.Conditional;
 import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
-@Slf4j
 @Service
 @RequiredArgsConstructor
 @Conditional(SetupFinishedCondition.class)
 public class ApiKeyService {
-    private final PasswordEncoder             passwordEncoder;
+    private final ApiKeySecretEncoder         apiKeySecretEncoder;
     private final ClientCredentialsRepository clientCredentialsRepository;
     private final CacheManager                apiKeyCacheManager;
     static final String                       HEADER                     = "Authorization";
     static final String                       HEADER_PREFIX              = "Bearer ";
     static final String                       SAPL_TOKEN_PREFIX          = "sapl_";
     static final String                       RSOCKET_METADATA_MIME_TPYE = "messaging/Bearer";
+    static final String                       API_KEY_CACHE              = "ApiKeyCache";
+
+    /**
+     * Entry of the ApiKeyCache. The cache is keyed by the client key, so all
+     * entries of a client can be evicted directly. Only a SHA-256 digest of the
+     * verified apiKey is kept.
+     */
+    private record VerifiedApiKey(byte[] apiKeyDigest, ApiKeyAuthenticationToken token) {}
+
+    /**
+     * Incremented on each eviction. A verification which overlaps with an
+     * eviction does not leave its result in the cache, as it may have read the
+     * revoked credentials.
+     */
+    private final AtomicLong revocationEpoch = new AtomicLong();
 
-    @Cacheable(cacheManager = "apiKeyCacheManager", value = "ApiKeyCache", unless = "#result == null")
     public ApiKeyAuthenticationToken checkApiKey(String apiKey) throws AuthenticationException {
-        if (apiKey.startsWith(SAPL_TOKEN_PREFIX)) {
-            var key = apiKey.split("_")[1];
+        var key = getClientKey(apiKey);
+        if (key != null) {
+            var cachedToken = getCachedApiKeyToken(key, apiKey);
+            if (cachedToken != null) {
+                return cachedToken;
+            }
+            var epoch = revocationEpoch.get();
             // get record matching key part of the apikey token
             var c = clientCredentialsRepository.findByKey(key)
                     .orElseThrow(() -> new UsernameNotFoundException("Provided apiKey client credentials not found"));
             // check type and encoded passwortd of the token entry
-            if (c.getAuthType().equals(AuthType.APIKEY) && passwordEncoder.matches(apiKey, c.getEncodedSecret())) {
-                return new ApiKeyAuthenticationToken(key);
+            if (c.getAuthType().equals(AuthType.APIKEY) && apiKeySecretEncoder.matches(apiKey, c.getEncodedSecret())) {
+                if (apiKeySecretEncoder.upgradeEncoding(c.getEncodedSecret())) {
+                    clientCredentialsRepository.updateEncodedSecret(key, c.getEncodedSecret(),
+                            apiKeySecretEncoder.encode(apiKey));
+                }
+                var token = new ApiKeyAuthenticationToken(key);
+                var cache = getApiKeyCache();
+                cache.put(key, new VerifiedApiKey(digest(apiKey), token));
+                if (revocationEpoch.get() != epoch) {
+                    cache.evict(key);
+                }
+                return token;
             } else {
                 throw new ApiKeyAuthenticationException("ApiKey not authorized");
             }
@@ -67,6 +96,26 @@ public class ApiKeyService {
         }
     }
 
+    /**
+     * Gets a token from the cache. The apiKey is only compared with the digest
+     * of the cached apiKey and not verified again.
+     *
+     * @param apiKey the apiKey
+     * @return the cached token or null if the apiKey is not cached
+     */
+    public ApiKeyAuthenticationToken getCachedApiKeyToken(String apiKey) {
+        var key = getClientKey(apiKey);
+        return key == null ? null : getCachedApiKeyToken(key, apiKey);
+    }
+
+    private ApiKeyAuthenticationToken getCachedApiKeyToken(String key, String apiKey) {
+        var cached = getApiKeyCache().get(key, VerifiedApiKey.class);
+        if (cached == null || !MessageDigest.isEqual(cached.apiKeyDigest(), digest(apiKey))) {
+            return null;
+        }
+        return cached.token();
+    }
+
     public static String getApiKeyToken(HttpServletRequest request) {
         var authorization = request.getHeader(HEADER);
         if (StringUtils.isNotEmpty(authorization) && authorization.startsWith(HEADER_PREFIX + SAPL_TOKEN_PREFIX)) {
@@ -75,18 +124,40 @@ public class ApiKeyService {
         return null;
     }
 
-    public void removeFromCache(String cacheKey) {
-        CaffeineCache apiKeyCache = (CaffeineCache) apiKeyCacheManager.getCache("ApiKeyCache");
-        if (apiKeyCache != null) {
-            var nativeCache = apiKeyCache.getNativeCache();
-            for (Map.Entry<Object, Object> entry : nativeCache.asMap().entrySet()) {
-                var cacheEntry = entry.getKey();
-                log.info("checking entry: " + cacheEntry);
-                if (cacheEntry.toString().startsWith(cacheKey + ".")) {
-                    log.info("removing entry: " + cacheEntry);
-                    apiKeyCache.evict(cacheEntry);
-                }
-            }
+    /**
+     * Evicts the cached apiKey of a client.
+     *
+     * @param clientKey the client key
+     */
+    public void removeFromCache(String clientKey) {
+        revocationEpoch.incrementAndGet();
+        getApiKeyCache().evict(clientKey);
+    }
+
+    private Cache getApiKeyCache() {
+        return Objects.requireNonNull(apiKeyCacheManager.getCache(API_KEY_CACHE));
+    }
+
+    /**
+     * Extracts the client key of an apiKey in the format
+     * sapl_&lt;key&gt;_&lt;secret&gt; without splitting the whole apiKey.
+     *
+     * @param apiKey the apiKey
+     * @return the client key or null if the apiKey is malformed
+     */
+    static String getClientKey(String apiKey) {
+        if (!apiKey.startsWith(SAPL_TOKEN_PREFIX)) {
+            return null;
+        }
+        var separator = apiKey.indexOf('_', SAPL_TOKEN_PREFIX.length());
+        if (separator <= SAPL_TOKEN_PREFIX.length() || separator == apiKey.length() - 1
+                || apiKey.indexOf('_', separator + 1) >= 0) {
+            return null;
         }
+        return apiKey.substring(SAPL_TOKEN_PREFIX.length(), separator);
+    }
+
+    private static byte[] digest(String apiKey) {
+        return Hashing.sha256().hashString(apiKey, StandardCharsets.UTF_8).asBytes();
     }
 }
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.jwt;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import io.sapl.server.ce.security.AuthenticationScheduler;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+/**
+ * Provides the decoders of JSON Web Tokens for the HTTP API and RSocket. Both
+ * share one decoder, so the JSON Web Key Set of the issuer is fetched and
+ * cached once. The key set is refreshed after the configured time, or earlier
+ * if a token is signed with an unknown key. Validated tokens are cached in the
+ * {@link JwtValidationCache}.
+ * <p>
+ * The metadata of the issuer is fetched in the background with exponential
+ * backoff, so the server starts without waiting for the issuer. Until the
+ * metadata is available, tokens are rejected. Optionally, the last fetched
+ * metadata is stored in a file and used on the next start until it has been
+ * fetched again. As the file determines the keys accepted for signatures, it is
+ * only used if its location is configured explicitly and neither the file nor
+ * its directory is writable by other users.
+ */
+@Slf4j
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class JwtDecoderProvider implements DisposableBean {
+
+    private static final String OIDC_METADATA_PATH  = "/.well-known/openid-configuration";
+    private static final String OAUTH_METADATA_PATH = "/.well-known/oauth-authorization-server";
+    private static final String ISSUER              = "issuer";
+    private static final String JWKS_URI            = "jwks_uri";
+
+    private static final Set<PosixFilePermission> OWNER_READ_WRITE = PosixFilePermissions.fromString("rw-------");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JwtValidationCache      jwtValidationCache;
+    private final AuthenticationScheduler authenticationScheduler;
+    private final String                  jwtIssuerURI;
+    private final CaffeineCache           jwkSetCache;
+    private final Path                    metadataCacheFile;
+    private final Duration                minBackoff;
+    private final Duration                maxBackoff;
+    private final RestTemplate            restTemplate;
+
+    private volatile JwtDecoder decoder;
+    private Disposable          discovery;
+
+    public JwtDecoderProvider(JwtValidationCache jwtValidationCache, AuthenticationScheduler authenticationScheduler,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri:#{null}}") String jwtIssuerURI,
+            @Value("${io.sapl.server.jwtCaching.jwkSetRefresh:#{300}}") Integer jwkSetRefreshSeconds,
+            @Value("${io.sapl.server.jwtIssuer.metadataCacheFile:#{null}}") String metadataCacheFile,
+            @Value("${io.sapl.server.jwtIssuer.minBackoff:#{1}}") Integer minBackoffSeconds,
+            @Value("${io.sapl.server.jwtIssuer.maxBackoff:#{60}}") Integer maxBackoffSeconds,
+            @Value("${io.sapl.server.jwtIssuer.timeout:#{10}}") Integer timeoutSeconds) {
+        this.jwtValidationCache      = jwtValidationCache;
+        this.authenticationScheduler = authenticationScheduler;
+        this.jwtIssuerURI            = jwtIssuerURI;
+        this.jwkSetCache             = new CaffeineCache("jwkSet",
+                Caffeine.newBuilder().expireAfterWrite(Duration.ofSeconds(jwkSetRefreshSeconds)).build());
+        this.metadataCacheFile       = metadataCacheFile == null ? null : Path.of(metadataCacheFile);
+        this.minBackoff              = Duration.ofSeconds(minBackoffSeconds);
+        this.maxBackoff              = Duration.ofSeconds(maxBackoffSeconds);
+        this.restTemplate            = new RestTemplate(requestFactory(Duration.ofSeconds(timeoutSeconds)));
+    }
+
+    /**
+     * Without timeouts, an issuer accepting the connection but never answering
+     * would block the discovery and prevent any retry.
+     */
+    private static SimpleClientHttpRequestFactory requestFactory(Duration timeout) {
+        var requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout((int) timeout.toMillis());
+        requestFactory.setReadTimeout((int) timeout.toMillis());
+        return requestFactory;
+    }
+
+    /**
+     * @return the decoder for the HTTP API
+     */
+    public JwtDecoder jwtDecoder() {
+        startDiscovery();
+        return token -> jwtValidationCache.decode(token, t -> getDecoder().decode(t));
+    }
+
+    /**
+     * @return the decoder for RSocket. Tokens which are not cached are decoded on
+     *         the {@link AuthenticationScheduler}, as the key set may have to be
+     *         fetched and the signature verification is CPU intensive.
+     */
+    public ReactiveJwtDecoder reactiveJwtDecoder() {
+        startDiscovery();
+        return token -> {
+            var jwt = jwtValidationCache.getValidated(token);
+            if (jwt != null) {
+                return Mono.just(jwt);
+            }
+            return authenticationScheduler.execute(() -> {
+                var validated = getDecoder().decode(token);
+                jwtValidationCache.putValidated(token, validated);
+                return validated;
+            });
+        };
+    }
+
+    private JwtDecoder getDecoder() {
+        var currentDecoder = decoder;
+        if (currentDecoder == null) {
+            // rejected as an invalid token with 401 instead of a server error
+            throw new BadJwtException("Metadata of issuer " + jwtIssuerURI + " not yet available");
+        }
+        return currentDecoder;
+    }
+
+    private synchronized void startDiscovery() {
+        if (discovery != null) {
+            return;
+        }
+
+        readCachedMetadata();
+        discovery = Mono.fromCallable(this::fetchMetadata).subscribeOn(Schedulers.boundedElastic())
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff).maxBackoff(maxBackoff)
+                        .doBeforeRetry(signal -> log.warn("Fetching metadata of issuer {} failed, retrying: {}",
+                                jwtIssuerURI, signal.failure().getMessage())))
+                .subscribe(metadata -> {
+                    useMetadata(metadata);
+                    writeCachedMetadata(metadata);
+                });
+    }
+
+    private JsonNode fetchMetadata() throws IOException {
+        IOException lastError = null;
+        for (var uri : metadataUris()) {
+            try {
+                var metadata = MAPPER.readTree(restTemplate.getForObject(uri, String.class));
+                validateMetadata(metadata);
+                log.info("fetched metadata of issuer {} from {}", jwtIssuerURI, uri);
+                return metadata;
+            } catch (IOException | RuntimeException e) {
+                lastError = new IOException(uri + ": " + e.getMessage(), e);
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * @return the locations of the metadata according to OpenID Connect Discovery
+     *         and RFC 8414
+     */
+    private List<URI> metadataUris() {
+        var issuer = URI.create(jwtIssuerURI);
+        var path   = issuer.getPath() == null ? "" : issuer.getPath().replaceAll("/$", "");
+        return List.of(
+                UriComponentsBuilder.fromUri(issuer).replacePath(path + OIDC_METADATA_PATH).build().toUri(),
+                UriComponentsBuilder.fromUri(issuer).replacePath(OIDC_METADATA_PATH + path).build().toUri(),
+                UriComponentsBuilder.fromUri(issuer).replacePath(OAUTH_METADATA_PATH + path).build().toUri());
+    }
+
+    private void validateMetadata(JsonNode metadata) {
+        if (!jwtIssuerURI.equals(metadata.path(ISSUER).asText())) {
+            throw new IllegalStateException("issuer of metadata does not match " + jwtIssuerURI);
+        }
+        if (!metadata.path(JWKS_URI).isTextual()) {
+            throw new IllegalStateException("metadata contains no " + JWKS_URI);
+        }
+    }
+
+    private void useMetadata(JsonNode metadata) {
+        var nimbusDecoder = NimbusJwtDecoder.withJwkSetUri(metadata.get(JWKS_URI).asText()).cache(jwkSetCache)
+                .build();
+        nimbusDecoder.setJwtValidator(JwtValidators.createDefaultWithIssuer(jwtIssuerURI));
+        decoder = nimbusDecoder;
+    }
+
+    private void readCachedMetadata() {
+        if (metadataCacheFile == null || !Files.isReadable(metadataCacheFile)) {
+            return;
+        }
+        try {
+            checkOnlyWritableByOwner(metadataCacheFile);
+            checkOnlyWritableByOwner(metadataCacheFile.toAbsolutePath().getParent());
+            var metadata = MAPPER.readTree(Files.readString(metadataCacheFile));
+            validateMetadata(metadata);
+            useMetadata(metadata);
+            log.info("using cached metadata of issuer {} from {}", jwtIssuerURI, metadataCacheFile);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Cached metadata of issuer {} in {} not usable: {}", jwtIssuerURI, metadataCacheFile,
+                    e.getMessage());
+        }
+    }
+
+    private void writeCachedMetadata(JsonNode metadata) {
+        if (metadataCacheFile == null) {
+            return;
+        }
+        var  directory     = metadataCacheFile.toAbsolutePath().getParent();
+        Path temporaryFile = null;
+        try {
+            checkOnlyWritableByOwner(directory);
+            temporaryFile = createOwnerOnlyFile(directory);
+            Files.writeString(temporaryFile, MAPPER.writeValueAsString(metadata), StandardCharsets.UTF_8);
+            Files.move(temporaryFile, metadataCacheFile, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not cache metadata of issuer {} in {}: {}", jwtIssuerURI, metadataCacheFile,
+                    e.getMessage());
+            deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * The file is created with its final permissions and moved into place when
+     * completely written, so the cached metadata is never readable by other users
+     * or partially written.
+     */
+    private static Path createOwnerOnlyFile(Path directory) throws IOException {
+        if (Files.getFileAttributeView(directory, PosixFileAttributeView.class) == null) {
+            return Files.createTempFile(directory, "issuer-metadata", ".tmp");
+        }
+        return Files.createTempFile(directory, "issuer-metadata", ".tmp",
+                PosixFilePermissions.asFileAttribute(OWNER_READ_WRITE));
+    }
+
+    private static void deleteIfExists(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Rejects files and directories which are not owned by the user running the
+     * server or which are writable by other users, like the temporary directory.
+     */
+    private static void checkOnlyWritableByOwner(Path path) throws IOException {
+        var owner = Files.getOwner(path).getName();
+        if (!owner.equals(System.getProperty("user.name"))) {
+            throw new IllegalStateException(path + " is owned by " + owner);
+        }
+        if (Files.getFileAttributeView(path, PosixFileAttributeView.class) == null) {
+            return;
+        }
+        var permissions = Files.getPosixFilePermissions(path);
+        if (permissions.contains(PosixFilePermission.GROUP_WRITE)
+                || permissions.contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IllegalStateException(path + " is writable by other users");
+        }
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (discovery != null) {
+            discovery.dispose();
+        }
+    }
+}
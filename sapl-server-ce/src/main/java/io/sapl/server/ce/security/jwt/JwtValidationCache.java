@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.google.common.hash.Hashing;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.NonNull;
+
+/**
+ * Cache of validated JSON Web Tokens. PEPs use the same access token for many
+ * requests, so the signature of a token is verified only once. Tokens are keyed
+ * by their SHA-256 hash and expire at the latest at their expiration time.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class JwtValidationCache {
+
+    private static final String CACHE_METRIC = "sapl.authentication.jwt.cache";
+
+    private final boolean            enabled;
+    private final Duration           maxTimeToLive;
+    private final Cache<String, Jwt> validatedTokens;
+    private final Counter            hits;
+    private final Counter            misses;
+
+    public JwtValidationCache(@Value("${io.sapl.server.jwtCaching.enabled:#{false}}") boolean enabled,
+            @Value("${io.sapl.server.jwtCaching.expire:#{300}}") Integer expireSeconds,
+            @Value("${io.sapl.server.jwtCaching.maxSize:#{10000}}") Integer maxSize, MeterRegistry meterRegistry) {
+        this.enabled         = enabled;
+        this.maxTimeToLive   = Duration.ofSeconds(expireSeconds);
+        this.validatedTokens = Caffeine.newBuilder().maximumSize(maxSize).expireAfter(new TokenExpiry()).build();
+        this.hits            = Counter.builder(CACHE_METRIC).tag("result", "hit")
+                .description("JWT validations served from the cache").register(meterRegistry);
+        this.misses          = Counter.builder(CACHE_METRIC).tag("result", "miss")
+                .description("JWT validations not found in the cache").register(meterRegistry);
+        meterRegistry.gauge(CACHE_METRIC + ".size", validatedTokens, Cache::estimatedSize);
+    }
+
+    /**
+     * Gets a previously validated token.
+     *
+     * @param token the encoded token
+     * @return the validated token or null if the token has not been validated
+     *         recently
+     */
+    public Jwt getValidated(@NonNull String token) {
+        if (!enabled) {
+            return null;
+        }
+
+        var jwt = validatedTokens.getIfPresent(hash(token));
+        if (jwt == null || isExpired(jwt)) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return jwt;
+    }
+
+    /**
+     * Caches a validated token.
+     *
+     * @param token the encoded token
+     * @param jwt   the validated token
+     */
+    public void putValidated(@NonNull String token, @NonNull Jwt jwt) {
+        if (enabled && !isExpired(jwt)) {
+            validatedTokens.put(hash(token), jwt);
+        }
+    }
+
+    /**
+     * Wraps a decoding function, so that only tokens which are not cached are
+     * decoded and validated.
+     *
+     * @param token   the encoded token
+     * @param decoder the decoding and validating function
+     * @return the validated token
+     */
+    public Jwt decode(@NonNull String token, @NonNull Function<String, Jwt> decoder) {
+        var jwt = getValidated(token);
+        if (jwt == null) {
+            jwt = decoder.apply(token);
+            putValidated(token, jwt);
+        }
+        return jwt;
+    }
+
+    private static boolean isExpired(Jwt jwt) {
+        var expiresAt = jwt.getExpiresAt();
+        return expiresAt != null && !Instant.now().isBefore(expiresAt);
+    }
+
+    private static String hash(String token) {
+        return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Expires each token after the maximum time to live or at its expiration
+     * time, whatever comes first.
+     */
+    private class TokenExpiry implements Expiry<String, Jwt> {
+        @Override
+        public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+            var timeToLive = maxTimeToLive;
+            var expiresAt  = jwt.getExpiresAt();
+            if (expiresAt != null) {
+                var remaining = Duration.between(Instant.now(), expiresAt);
+                if (remaining.compareTo(timeToLive) < 0) {
+                    timeToLive = remaining.isNegative() ? Duration.ZERO : remaining;
+                }
+            }
+            return timeToLive.toNanos();
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
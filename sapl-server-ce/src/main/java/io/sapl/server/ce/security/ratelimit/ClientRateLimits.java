@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.ratelimit;
+
+import java.time.Duration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.server.resource.authentication.AbstractOAuth2TokenAuthenticationToken;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.sapl.server.ce.model.clients.ClientCredentials;
+import io.sapl.server.ce.model.clients.ClientCredentialsRepository;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * Rate limits of the clients of the HTTP API and RSocket. Requests are limited
+ * per authenticated principal, i.e., per client key of API key and Basic
+ * clients and per subject of JSON Web Tokens. Unauthenticated requests are
+ * limited per remote address.
+ * <p>
+ * The quota of API key and Basic clients can be configured per client (see
+ * {@link ClientCredentials#getRateLimit()}), all other clients get the default
+ * quota. Quotas are cached for the configured time.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class ClientRateLimits {
+
+    private static final String CLIENT_PREFIX  = "client:";
+    private static final String JWT_PREFIX     = "jwt:";
+    private static final String ADDRESS_PREFIX = "address:";
+
+    @Getter
+    private final boolean                     enabled;
+    private final long                        defaultCapacity;
+    private final Duration                    period;
+    private final ClusterRateLimiter          clusterRateLimiter;
+    private final ClientCredentialsRepository clientCredentialsRepository;
+    private final Cache<String, Long>         quotas;
+
+    public ClientRateLimits(@Value("${io.sapl.server.rateLimiting.enabled:#{false}}") boolean enabled,
+            @Value("${io.sapl.server.rateLimiting.capacity:#{1000}}") long defaultCapacity,
+            @Value("${io.sapl.server.rateLimiting.period:#{1}}") long periodSeconds,
+            @Value("${io.sapl.server.rateLimiting.quotaCacheTtl:#{60}}") long quotaCacheTtlSeconds,
+            ClusterRateLimiter clusterRateLimiter, ClientCredentialsRepository clientCredentialsRepository) {
+        this.enabled                     = enabled;
+        this.defaultCapacity             = defaultCapacity;
+        this.period                      = Duration.ofSeconds(periodSeconds);
+        this.clusterRateLimiter          = clusterRateLimiter;
+        this.clientCredentialsRepository = clientCredentialsRepository;
+        this.quotas                      = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(quotaCacheTtlSeconds)).maximumSize(100000).build();
+    }
+
+    /**
+     * Consumes a token of the bucket of a client. May access the database.
+     *
+     * @param authentication the authentication of the client, or null if the
+     *                       request is not authenticated
+     * @param remoteAddress  the remote address used for unauthenticated requests
+     * @return true if the request is within the rate limit of the client
+     */
+    public boolean tryConsume(Authentication authentication, @NonNull String remoteAddress) {
+        var bucketKey = bucketKey(authentication, remoteAddress);
+        var capacity  = defaultCapacity;
+        if (bucketKey.startsWith(CLIENT_PREFIX)) {
+            capacity = quotas.get(authentication.getName(), this::loadQuota);
+        }
+        return clusterRateLimiter.tryConsume(bucketKey, capacity, period);
+    }
+
+    /**
+     * Consumes a token of the bucket of a client without accessing the database.
+     *
+     * @param authentication the authentication of the client, or null if the
+     *                       request is not authenticated
+     * @param remoteAddress  the remote address used for unauthenticated requests
+     * @return true if the request is within the rate limit of the client, false if
+     *         it is not, or null if the database must be accessed with
+     *         {@link #tryConsume(Authentication, String)}
+     */
+    public Boolean tryConsumeLocally(Authentication authentication, @NonNull String remoteAddress) {
+        var bucketKey = bucketKey(authentication, remoteAddress);
+        if (bucketKey.startsWith(CLIENT_PREFIX) && quotas.getIfPresent(authentication.getName()) == null) {
+            return null;
+        }
+        return clusterRateLimiter.tryConsumeLocally(bucketKey);
+    }
+
+    /**
+     * Evicts the cached quota of a client after it has been changed.
+     *
+     * @param clientKey the key of the client
+     */
+    public void evictQuota(@NonNull String clientKey) {
+        quotas.invalidate(clientKey);
+    }
+
+    private long loadQuota(String clientKey) {
+        return clientCredentialsRepository.findByKey(clientKey).map(ClientCredentials::getRateLimit)
+                .map(Integer::longValue).orElse(defaultCapacity);
+    }
+
+    private static String bucketKey(Authentication authentication, String remoteAddress) {
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return ADDRESS_PREFIX + remoteAddress;
+        }
+        if (authentication instanceof AbstractOAuth2TokenAuthenticationToken<?>) {
+            return JWT_PREFIX + authentication.getName();
+        }
+        return CLIENT_PREFIX + authentication.getName();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.ratelimit;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import io.sapl.server.ce.model.ratelimit.RateLimitBucketStore;
+import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import lombok.NonNull;
+
+/**
+ * Rate limiter with token buckets shared by all instances through the
+ * {@link RateLimitBucketStore}.
+ * <p>
+ * To avoid a database round trip for each request, every instance takes tokens
+ * in batches of the configured prefetch size and consumes them locally. Unused
+ * prefetched tokens are discarded after the prefetch time to live, which bounds
+ * the tokens held back by instances. If a bucket is empty, the database is not
+ * asked again until a token has been refilled. Tokens taken concurrently for the
+ * same bucket are added to the prefetched tokens, so none of them get lost.
+ */
+@Component
+@Conditional(SetupFinishedCondition.class)
+public class ClusterRateLimiter {
+
+    private final RateLimitBucketStore          rateLimitBucketStore;
+    private final long                          prefetch;
+    private final Cache<String, LocalAllowance> allowances;
+    // the time in milliseconds since the epoch, replaced by tests
+    private LongSupplier                        clock = System::currentTimeMillis;
+
+    public ClusterRateLimiter(RateLimitBucketStore rateLimitBucketStore,
+            @Value("${io.sapl.server.rateLimiting.prefetch:#{10}}") long prefetch,
+            @Value("${io.sapl.server.rateLimiting.prefetchTtl:#{1000}}") long prefetchTtlMillis,
+            @Value("${io.sapl.server.rateLimiting.maxClients:#{100000}}") long maxClients) {
+        this.rateLimitBucketStore = rateLimitBucketStore;
+        this.prefetch             = Math.max(1L, prefetch);
+        this.allowances           = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(prefetchTtlMillis))
+                .maximumSize(maxClients).build();
+    }
+
+    /**
+     * Tokens of a bucket prefetched by this instance.
+     */
+    private static final class LocalAllowance {
+        private long tokens;
+        private long blockedUntil;
+
+        /**
+         * @return true if a prefetched token has been consumed, false if the bucket
+         *         is known to be empty, or null if tokens must be taken from the
+         *         store
+         */
+        private Boolean tryConsume(long now) {
+            if (tokens > 0) {
+                tokens--;
+                return Boolean.TRUE;
+            }
+            if (now < blockedUntil) {
+                return Boolean.FALSE;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Consumes a prefetched token of a bucket without accessing the database.
+     *
+     * @param bucketKey the key of the bucket
+     * @return true if a token has been consumed, false if the rate limit is
+     *         exceeded, or null if tokens must be taken from the database with
+     *         {@link #tryConsume(String, long, Duration)}
+     */
+    public Boolean tryConsumeLocally(@NonNull String bucketKey) {
+        var allowance = allowances.getIfPresent(bucketKey);
+        if (allowance == null) {
+            return null;
+        }
+        synchronized (allowance) {
+            return allowance.tryConsume(clock.getAsLong());
+        }
+    }
+
+    /**
+     * Consumes a token of a bucket.
+     *
+     * @param bucketKey the key of the bucket
+     * @param capacity  the capacity of the bucket
+     * @param period    the time to refill the bucket completely
+     * @return true if a token has been consumed, false if the rate limit is
+     *         exceeded
+     */
+    public boolean tryConsume(@NonNull String bucketKey, long capacity, @NonNull Duration period) {
+        if (capacity <= 0) {
+            return false;
+        }
+        var allowance = allowances.get(bucketKey, key -> new LocalAllowance());
+        synchronized (allowance) {
+            var consumed = allowance.tryConsume(clock.getAsLong());
+            if (consumed != null) {
+                return consumed;
+            }
+        }
+
+        // the database transaction must not hold the monitor, which is also taken
+        // by tryConsumeLocally on the event loop
+        var now   = clock.getAsLong();
+        var taken = rateLimitBucketStore.take(bucketKey, capacity, period, Math.min(prefetch, capacity));
+        synchronized (allowance) {
+            if (taken == 0) {
+                allowance.blockedUntil = now + Math.max(1L, period.toMillis() / Math.max(1L, capacity));
+                return false;
+            }
+            allowance.tokens += taken - 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.ratelimit;
+
+import java.util.Optional;
+
+import org.springframework.core.Ordered;
+import org.springframework.security.config.annotation.rsocket.PayloadInterceptorOrder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.rsocket.api.PayloadExchange;
+import org.springframework.security.rsocket.api.PayloadExchangeType;
+import org.springframework.security.rsocket.api.PayloadInterceptor;
+import org.springframework.security.rsocket.api.PayloadInterceptorChain;
+
+import io.rsocket.exceptions.RejectedException;
+import lombok.RequiredArgsConstructor;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Rejects RSocket requests exceeding the cluster-wide rate limit of their
+ * client. Runs after the authentication interceptors. Tokens prefetched by this
+ * instance are consumed on the event loop, the database is only accessed on a
+ * separate scheduler.
+ */
+@RequiredArgsConstructor
+public class RateLimitPayloadInterceptor implements PayloadInterceptor, Ordered {
+
+    private static final String RSOCKET_ADDRESS = "rsocket";
+
+    private final ClientRateLimits clientRateLimits;
+
+    @Override
+    public Mono<Void> intercept(PayloadExchange exchange, PayloadInterceptorChain chain) {
+        if (exchange.getType() == PayloadExchangeType.SETUP) {
+            return chain.next(exchange);
+        }
+        return ReactiveSecurityContextHolder.getContext().map(SecurityContext::getAuthentication).map(Optional::of)
+                .defaultIfEmpty(Optional.empty()).flatMap(this::tryConsume).flatMap(withinLimit -> {
+                    if (Boolean.TRUE.equals(withinLimit)) {
+                        return chain.next(exchange);
+                    }
+                    return Mono.error(new RejectedException("Rate limit exceeded"));
+                });
+    }
+
+    private Mono<Boolean> tryConsume(Optional<Authentication> authentication) {
+        var consumed = clientRateLimits.tryConsumeLocally(authentication.orElse(null), RSOCKET_ADDRESS);
+        if (consumed != null) {
+            return Mono.just(consumed);
+        }
+        return Mono.fromCallable(() -> clientRateLimits.tryConsume(authentication.orElse(null), RSOCKET_ADDRESS))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    @Override
+    public int getOrder() {
+        return PayloadInterceptorOrder.AUTHORIZATION.getOrder() - 1;
+    }
+}
@@ -32,6 +32,7 @@ import com.vaadin.flow.component.html.Span;
 import com.vaadin.flow.component.icon.Icon;
 import com.vaadin.flow.component.orderedlayout.HorizontalLayout;
 import com.vaadin.flow.component.orderedlayout.VerticalLayout;
+import com.vaadin.flow.component.textfield.IntegerField;
 import com.vaadin.flow.component.textfield.TextArea;
 import com.vaadin.flow.component.textfield.TextField;
 import com.vaadin.flow.data.provider.CallbackDataProvider;
@@ -109,14 +110,19 @@ public class ClientCredentialsView extends VerticalLayout {
     private void initClientCredentialsGrid() {
         clientCredentialsGrid.addColumn(ClientCredentials::getKey).setHeader("Key").setSortable(true);
         clientCredentialsGrid.addColumn(ClientCredentials::getAuthType).setHeader("Auth Type").setSortable(true);
+        clientCredentialsGrid.addColumn(clientCredential -> clientCredential.getRateLimit() == null ? "default"
+                : clientCredential.getRateLimit().toString()).setHeader("Rate Limit");
 
         clientCredentialsGrid.addComponentColumn(currentClientCredential -> {
+            Button rateLimitButton = new Button("Rate Limit", LineAwesomeIcon.TACHOMETER_ALT_SOLID.create());
+            rateLimitButton.addClickListener(clickEvent -> showDialogForRateLimit(currentClientCredential));
+
             Button deleteButton = new Button("Delete", LineAwesomeIcon.TRASH_SOLID.create());
             deleteButton.setThemeName("primary");
             deleteButton.addClickListener(clickEvent -> deleteClient(currentClientCredential));
 
             HorizontalLayout componentsForEntry = new HorizontalLayout();
-            componentsForEntry.add(deleteButton);
+            componentsForEntry.add(rateLimitButton, deleteButton);
 
             return componentsForEntry;
         });
@@ -153,6 +159,40 @@ public class ClientCredentialsView extends VerticalLayout {
         clientCredentialsGrid.getDataProvider().refreshAll();
     }
 
+    private void showDialogForRateLimit(ClientCredentials currentClientCredential) {
+        var layout = new VerticalLayout();
+        var text   = new Span(
+                "Maximum number of requests of the client per rate limiting period. Leave empty to apply the default quota.");
+
+        var rateLimitField = new IntegerField("Rate Limit");
+        rateLimitField.setMin(0);
+        rateLimitField.setValue(currentClientCredential.getRateLimit());
+        rateLimitField.setClearButtonVisible(true);
+        rateLimitField.setWidthFull();
+
+        layout.add(text, rateLimitField);
+
+        Dialog dialog = new Dialog(layout);
+        dialog.setHeaderTitle("Rate Limit of " + currentClientCredential.getKey());
+        var saveButton = new Button("Save", e -> {
+            try {
+                clientCredentialsService.setRateLimit(currentClientCredential, rateLimitField.getValue());
+            } catch (Exception ex) {
+                ErrorNotificationUtils
+                        .show("The rate limit cannot be saved due to an internal error. " + ex.getMessage());
+                return;
+            }
+            dialog.close();
+            clientCredentialsGrid.getDataProvider().refreshAll();
+        });
+        saveButton.addThemeVariants(ButtonVariant.LUMO_PRIMARY);
+        var cancelButton = new Button("Cancel", e -> dialog.close());
+        dialog.getFooter().add(cancelButton, saveButton);
+        dialog.setWidth("600px");
+        dialog.setModal(true);
+        dialog.open();
+    }
+
     private void showDialogForCreatedBasicClient(@NonNull String key, @NonNull String secret) {
         var layout = new VerticalLayout();
         var text   = new Span(
@@ -17,6 +17,10 @@
  */
 package io.sapl.server.ce.ui.views.digitalpolicies;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import org.springframework.context.annotation.Conditional;
 
 import com.vaadin.flow.component.button.Button;
@@ -29,18 +33,22 @@ import com.vaadin.flow.data.provider.DataProvider;
 import com.vaadin.flow.router.PageTitle;
 import com.vaadin.flow.router.Route;
 
+import io.sapl.server.ce.model.sapldocument.PublishedDocumentNameCollisionException;
 import io.sapl.server.ce.model.sapldocument.SaplDocument;
 import io.sapl.server.ce.model.sapldocument.SaplDocumentService;
 import io.sapl.server.ce.model.setup.condition.SetupFinishedCondition;
+import io.sapl.server.ce.ui.utils.ErrorNotificationUtils;
 import io.sapl.server.ce.ui.views.MainLayout;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.security.RolesAllowed;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * View for listening and managing SAPL documents. A Designer generated
  * component for the list-sapl-documents template.
  */
+@Slf4j
 @RolesAllowed("ADMIN")
 @RequiredArgsConstructor
 @PageTitle("Digital Policies")
@@ -54,12 +62,14 @@ public class DigitalPoliciesView extends VerticalLayout {
 
     private final transient SaplDocumentService saplDocumentService;
 
-    private final Grid<SaplDocument> saplDocumentGrid = new Grid<>();
-    private final Button             createButton     = new Button("Create");
+    private final Grid<SaplDocument> saplDocumentGrid        = new Grid<>();
+    private final Button             createButton            = new Button("Create");
+    private final Button             publishSelectedButton   = new Button("Publish Current Versions of Selected");
+    private final Button             unpublishSelectedButton = new Button("Unpublish Selected");
 
     @PostConstruct
     private void init() {
-        add(createButton, saplDocumentGrid);
+        add(new HorizontalLayout(createButton, publishSelectedButton, unpublishSelectedButton), saplDocumentGrid);
 
         initSaplDocumentGrid();
 
@@ -67,6 +77,42 @@ public class DigitalPoliciesView extends VerticalLayout {
             saplDocumentService.createDefault();
             saplDocumentGrid.getDataProvider().refreshAll();
         });
+        publishSelectedButton.addClickListener(clickEvent -> {
+            Map<Long, Integer> versionsToPublish = saplDocumentGrid.getSelectedItems().stream().collect(
+                    Collectors.toMap(SaplDocument::getId, SaplDocument::getCurrentVersionNumber));
+            applyPublicationChanges(versionsToPublish, List.of());
+        });
+        unpublishSelectedButton.addClickListener(clickEvent -> {
+            List<Long> documentsToUnpublish = saplDocumentGrid.getSelectedItems().stream().map(SaplDocument::getId)
+                    .toList();
+            applyPublicationChanges(Map.of(), documentsToUnpublish);
+        });
+        updateBatchButtons();
+    }
+
+    /**
+     * Applies the publication changes of the selected documents as one batch, so
+     * the PDP is only updated once.
+     */
+    private void applyPublicationChanges(Map<Long, Integer> versionsToPublish, List<Long> documentsToUnpublish) {
+        try {
+            saplDocumentService.publishAndUnpublishPolicies(versionsToPublish, documentsToUnpublish);
+        } catch (PublishedDocumentNameCollisionException ex) {
+            ErrorNotificationUtils.show(ex);
+            return;
+        } catch (Exception throwable) {
+            ErrorNotificationUtils.show("The publication of the selected documents could not be changed.");
+            log.error("The publication of the selected documents could not be changed.", throwable);
+            return;
+        }
+        saplDocumentGrid.deselectAll();
+        saplDocumentGrid.getDataProvider().refreshAll();
+    }
+
+    private void updateBatchButtons() {
+        boolean isAnySelected = !saplDocumentGrid.getSelectedItems().isEmpty();
+        publishSelectedButton.setEnabled(isAnySelected);
+        unpublishSelectedButton.setEnabled(isAnySelected);
     }
 
     private void initSaplDocumentGrid() {
@@ -98,6 +144,8 @@ public class DigitalPoliciesView extends VerticalLayout {
             return saplDocumentService.getAll().stream().skip(offset).limit(limit);
         }, query -> (int) saplDocumentService.getAmount());
         saplDocumentGrid.setItems(dataProvider);
+        saplDocumentGrid.setSelectionMode(Grid.SelectionMode.MULTI);
+        saplDocumentGrid.addSelectionListener(selection -> updateBatchButtons());
 
         saplDocumentGrid.setAllRowsVisible(true);
     }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+
+class BinaryEncodingTests {
+
+    @ParameterizedTest
+    @ValueSource(ints = { 1, 5, 10, 25, 50 })
+    void binaryEncodingsAreSmallerAndEquivalent(int resourceKilobytes) throws IOException {
+        var subscription = CborAndSmileBenchmark.subscription(resourceKilobytes);
+        var json         = CborAndSmileBenchmark.mapper("JSON").writeValueAsBytes(subscription);
+
+        for (var encoding : new String[] { "CBOR", "Smile" }) {
+            var mapper  = CborAndSmileBenchmark.mapper(encoding);
+            var payload = mapper.writeValueAsBytes(subscription);
+
+            assertThat(payload).hasSizeLessThan(json.length);
+            assertThat(mapper.readValue(payload, AuthorizationSubscription.class)).isEqualTo(subscription);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.config;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import io.sapl.api.pdp.AuthorizationSubscription;
+
+/**
+ * Compares the encoding and decoding time of JSON, CBOR and Smile for
+ * subscriptions with resources of 1 KB to 50 KB. The payload sizes are
+ * compared by {@link BinaryEncodingTests}.
+ */
+@Fork(2)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CborAndSmileBenchmark {
+
+    @Param({ "JSON", "CBOR", "Smile" })
+    private String encoding;
+
+    @Param({ "1", "5", "10", "25", "50" })
+    private int resourceKilobytes;
+
+    private ObjectMapper              mapper;
+    private ObjectReader              reader;
+    private AuthorizationSubscription subscription;
+    private byte[]                    payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        mapper       = mapper(encoding);
+        reader       = mapper.readerFor(AuthorizationSubscription.class);
+        subscription = subscription(resourceKilobytes);
+        payload      = mapper.writeValueAsBytes(subscription);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(subscription);
+    }
+
+    @Benchmark
+    public AuthorizationSubscription decode() throws IOException {
+        return reader.readValue(payload);
+    }
+
+    static ObjectMapper mapper(String encoding) {
+        return switch (encoding) {
+        case "CBOR" -> BinaryEncodingConfiguration.cborMapper(Jackson2ObjectMapperBuilder.json());
+        case "Smile" -> BinaryEncodingConfiguration.smileMapper(Jackson2ObjectMapperBuilder.json());
+        default -> Jackson2ObjectMapperBuilder.json().build();
+        };
+    }
+
+    /**
+     * @return a subscription with a resource like a typical business document,
+     *         whose JSON encoding has at least the given size
+     */
+    static AuthorizationSubscription subscription(int resourceKilobytes) throws IOException {
+        var json     = Jackson2ObjectMapperBuilder.json().build();
+        var resource = JsonNodeFactory.instance.objectNode().put("type", "order").put("id", "4711");
+        var items    = resource.putArray("items");
+        for (var i = 0; json.writeValueAsBytes(resource).length < resourceKilobytes * 1024; i++) {
+            var item = items.addObject().put("position", i).put("article", "article-" + i)
+                    .put("description", "a description of the ordered article " + i).put("quantity", i % 7 + 1)
+                    .put("price", 9.99D + i).put("available", i % 3 != 0);
+            item.putArray("tags").add("warehouse-" + i % 4).add("category-" + i % 11);
+        }
+        return AuthorizationSubscription.of("willi", "read", resource);
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.cluster;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import io.sapl.server.ce.model.pdpconfiguration.CombiningAlgorithmService;
+import io.sapl.server.ce.model.pdpconfiguration.Variable;
+import io.sapl.server.ce.model.pdpconfiguration.VariablesService;
+import io.sapl.server.ce.model.sapldocument.SaplDocumentService;
+import io.sapl.server.ce.pdp.CEVariablesAndCombinatorSource;
+import io.sapl.server.ce.security.ClientDetailsService;
+
+/**
+ * Runs two instances sharing one H2 database and checks that changes made on
+ * one instance are applied by the other one.
+ */
+class ConfigurationChangePollerTests {
+
+    private static ConfigurableApplicationContext instanceA;
+    private static ConfigurableApplicationContext instanceB;
+
+    @BeforeAll
+    static void startInstances() {
+        var databaseUrl = "jdbc:h2:mem:cluster-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1";
+        instanceA = startInstance(databaseUrl);
+        instanceB = startInstance(databaseUrl);
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        instanceA.close();
+        instanceB.close();
+    }
+
+    @BeforeEach
+    void catchUp() {
+        reset(instanceB.getBean(SaplDocumentService.class), instanceB.getBean(ClientDetailsService.class));
+        instanceB.getBean(ConfigurationChangePoller.class).poll();
+    }
+
+    @Test
+    void variableChangedOnOneInstanceIsAppliedOnTheOther() throws Exception {
+        var variablesOfA = instanceA.getBean(VariablesService.class);
+        var variable     = variablesOfA.create("limit");
+        variablesOfA.edit(variable.getId(), "limit", "42");
+
+        instanceB.getBean(ConfigurationChangePoller.class).poll();
+
+        var variablesOfB = instanceB.getBean(CEVariablesAndCombinatorSource.class).getVariables().blockFirst()
+                .orElseThrow();
+        assertThat(variablesOfB.get("limit").get().asInt()).isEqualTo(42);
+    }
+
+    @Test
+    void failedRefreshIsRetriedOnNextPoll() {
+        var documentsOfB = instanceB.getBean(SaplDocumentService.class);
+        var pollerOfB    = instanceB.getBean(ConfigurationChangePoller.class);
+        doThrow(new IllegalStateException("database unavailable")).doNothing().when(documentsOfB)
+                .refreshPublishedDocuments(any());
+
+        instanceA.getBean(ConfigurationChangeLog.class).record(ConfigurationChangeType.PUBLISHED_DOCUMENT,
+                "policy");
+        pollerOfB.poll();
+        pollerOfB.poll();
+        pollerOfB.poll();
+
+        verify(documentsOfB, times(2)).refreshPublishedDocuments(Set.of("policy"));
+    }
+
+    @Test
+    void revokedClientIsEvictedEvenIfRefreshFails() {
+        var documentsOfB = instanceB.getBean(SaplDocumentService.class);
+        var clientsOfB   = instanceB.getBean(ClientDetailsService.class);
+        doThrow(new IllegalStateException("database unavailable")).when(documentsOfB)
+                .refreshPublishedDocuments(any());
+
+        var changeLogOfA = instanceA.getBean(ConfigurationChangeLog.class);
+        changeLogOfA.record(ConfigurationChangeType.PUBLISHED_DOCUMENT, "policy");
+        changeLogOfA.record(ConfigurationChangeType.CLIENT_CREDENTIALS, "client");
+        instanceB.getBean(ConfigurationChangePoller.class).poll();
+
+        verify(clientsOfB).evictCachedCredentials("client");
+    }
+
+    @Test
+    void ownChangesAreNotApplied() {
+        var documentsOfB = instanceB.getBean(SaplDocumentService.class);
+        doNothing().when(documentsOfB).refreshPublishedDocuments(any());
+        clearInvocations(documentsOfB);
+
+        instanceB.getBean(ConfigurationChangeLog.class).record(ConfigurationChangeType.PUBLISHED_DOCUMENT,
+                "policy");
+        instanceB.getBean(ConfigurationChangePoller.class).poll();
+
+        verify(documentsOfB, times(0)).refreshPublishedDocuments(any());
+    }
+
+    private static ConfigurableApplicationContext startInstance(String databaseUrl) {
+        return new SpringApplicationBuilder(ClusterInstance.class).web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.datasource.url=" + databaseUrl, "--spring.datasource.username=sa",
+                        "--spring.datasource.password=", "--spring.jpa.hibernate.ddl-auto=update",
+                        "--io.sapl.server.accesscontrol.admin-username=admin", "--io.sapl.server.cluster.enabled=true",
+                        "--io.sapl.server.cluster.gap-timeout=0");
+    }
+
+    /**
+     * An instance with the JPA repositories and the services of the PDP
+     * configuration. Documents are not loaded, so the document service and the
+     * client service are replaced by mocks.
+     */
+    @Configuration
+    @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class })
+    @EntityScan(basePackageClasses = { ConfigurationChange.class, Variable.class })
+    @EnableJpaRepositories(basePackageClasses = { ConfigurationChange.class, Variable.class })
+    @Import({ ConfigurationChangeLog.class, ConfigurationChangePoller.class, VariablesService.class,
+            CombiningAlgorithmService.class, CEVariablesAndCombinatorSource.class })
+    static class ClusterInstance {
+
+        @Bean
+        SaplDocumentService saplDocumentService() {
+            return mock(SaplDocumentService.class);
+        }
+
+        @Bean
+        ClientDetailsService clientDetailsService() {
+            return mock(ClientDetailsService.class);
+        }
+    }
+}
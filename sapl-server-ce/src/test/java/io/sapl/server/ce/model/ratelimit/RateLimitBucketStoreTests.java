@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.model.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Takes tokens from buckets in an H2 database. Two stores sharing the database
+ * act as two instances.
+ */
+class RateLimitBucketStoreTests {
+
+    private static final Duration SECOND = Duration.ofSeconds(1);
+
+    private static ConfigurableApplicationContext context;
+
+    private final AtomicLong          time = new AtomicLong(1_000_000L);
+    private RateLimitBucketRepository repository;
+    private RateLimitBucketStore      store;
+    private String                    bucketKey;
+
+    @BeforeAll
+    static void startDatabase() {
+        context = new SpringApplicationBuilder(Database.class).web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.datasource.url=jdbc:h2:mem:ratelimit-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa", "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=update");
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        context.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = context.getBean(RateLimitBucketRepository.class);
+        store      = newStore(time::get);
+        bucketKey  = UUID.randomUUID().toString();
+    }
+
+    @Test
+    void bucketIsRefilledOverTime() {
+        // one token per 100 milliseconds
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isEqualTo(10);
+        assertThat(store.take(bucketKey, 10, SECOND, 1)).isZero();
+
+        time.addAndGet(250);
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isEqualTo(2);
+
+        time.addAndGet(100);
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isEqualTo(1);
+    }
+
+    @Test
+    void bucketIsRefilledUpToCapacity() {
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isEqualTo(10);
+
+        time.addAndGet(60_000);
+        assertThat(store.take(bucketKey, 10, SECOND, 100)).isEqualTo(10);
+
+        var bucket = repository.findById(bucketKey).orElseThrow();
+        assertThat(bucket.getTokens()).isZero();
+        assertThat(bucket.getFullAt()).isEqualTo(time.get() + 1000);
+    }
+
+    @Test
+    void bucketWithoutCapacityGrantsNothing() {
+        assertThat(store.take(bucketKey, 0, SECOND, 1)).isZero();
+        assertThat(repository.findById(bucketKey)).isEmpty();
+    }
+
+    @Test
+    void instanceWithLaggingClockDoesNotRefillAgain() {
+        var lagging = newStore(() -> time.get() - 300);
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isEqualTo(10);
+
+        time.addAndGet(500);
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isEqualTo(5);
+        assertThat(lagging.take(bucketKey, 10, SECOND, 10)).isZero();
+        assertThat(store.take(bucketKey, 10, SECOND, 10)).isZero();
+    }
+
+    @Test
+    void instancesSharingBucketDoNotExceedCapacity() throws Exception {
+        var instances = new RateLimitBucketStore[] { store, newStore(time::get) };
+        var executor  = Executors.newFixedThreadPool(8);
+        try {
+            var takers = new ArrayList<Callable<Long>>();
+            for (var i = 0; i < 8; i++) {
+                var instance = instances[i % 2];
+                takers.add(() -> {
+                    var taken = 0L;
+                    for (var j = 0; j < 20; j++) {
+                        taken += instance.take(bucketKey, 100, SECOND, 3);
+                    }
+                    return taken;
+                });
+            }
+            var total = 0L;
+            for (var result : executor.invokeAll(takers)) {
+                total += result.get();
+            }
+            assertThat(total).isEqualTo(100);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private RateLimitBucketStore newStore(LongSupplier clock) {
+        var instance = new RateLimitBucketStore(repository, context.getBean(TransactionTemplate.class));
+        ReflectionTestUtils.setField(instance, "clock", clock);
+        return instance;
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class })
+    @EntityScan(basePackageClasses = RateLimitBucket.class)
+    @EnableJpaRepositories(basePackageClasses = RateLimitBucket.class)
+    static class Database {
+    }
+}
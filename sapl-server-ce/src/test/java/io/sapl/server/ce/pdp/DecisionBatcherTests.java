@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.IdentifiableAuthorizationDecision;
+import io.sapl.api.pdp.MultiAuthorizationSubscription;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import reactor.core.publisher.Flux;
+
+class DecisionBatcherTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private PolicyDecisionPoint pdp;
+    private DecisionBatcher     decisionBatcher;
+
+    @BeforeEach
+    void setUp() {
+        var meterRegistry = new SimpleMeterRegistry();
+        pdp             = mock(PolicyDecisionPoint.class);
+        decisionBatcher = new DecisionBatcher(pdp, new ObjectMapper(), 10, Duration.ofMillis(5),
+                meterRegistry.summary("batch.size"), meterRegistry.counter("coalesced"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        decisionBatcher.dispose();
+    }
+
+    @Test
+    void concurrentRequestsAreDecided() throws Exception {
+        when(pdp.decide(any(MultiAuthorizationSubscription.class))).thenAnswer(invocation -> permitAll(invocation
+                .getArgument(0, MultiAuthorizationSubscription.class)));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            var decisions = new ArrayList<Future<AuthorizationDecision>>();
+            for (var i = 0; i < 1000; i++) {
+                var subscription = AuthorizationSubscription.of("user" + (i % 50), "read", "book");
+                decisions.add(executor.submit(() -> decisionBatcher.decideOnce(subscription).block(TIMEOUT)));
+            }
+            for (var decision : decisions) {
+                assertThat(decision.get()).isEqualTo(AuthorizationDecision.PERMIT);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void failingBatchDoesNotStopBatching() {
+        when(pdp.decide(any(MultiAuthorizationSubscription.class))).thenThrow(new IllegalStateException("broken"))
+                .thenAnswer(invocation -> permitAll(invocation.getArgument(0, MultiAuthorizationSubscription.class)));
+
+        var subscription = AuthorizationSubscription.of("willi", "read", "book");
+        assertThatThrownBy(() -> decisionBatcher.decideOnce(subscription).block(TIMEOUT))
+                .hasMessageContaining("broken");
+        assertThat(decisionBatcher.decideOnce(subscription).block(TIMEOUT)).isEqualTo(AuthorizationDecision.PERMIT);
+    }
+
+    @Test
+    void requestsAreRejectedAfterDisposal() {
+        decisionBatcher.dispose();
+
+        var decision = decisionBatcher.decideOnce(AuthorizationSubscription.of("willi", "read", "book"));
+        assertThatThrownBy(() -> decision.block(TIMEOUT)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static Flux<IdentifiableAuthorizationDecision> permitAll(MultiAuthorizationSubscription subscriptions) {
+        return Flux.fromIterable(subscriptions).map(subscription -> new IdentifiableAuthorizationDecision(
+                subscription.getAuthorizationSubscriptionId(), AuthorizationDecision.PERMIT));
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.AutoConfigurationImportSelector;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import io.sapl.api.pdp.Decision;
+import io.sapl.api.pdp.PolicyDecisionPoint;
+import io.sapl.interpreter.combinators.PolicyDocumentCombiningAlgorithm;
+import io.sapl.server.ce.model.cluster.ConfigurationChange;
+import io.sapl.server.ce.model.cluster.ConfigurationChangeLog;
+import io.sapl.server.ce.model.pdpconfiguration.Variable;
+import io.sapl.server.ce.model.sapldocument.ParsedDocumentCache;
+import io.sapl.server.ce.model.sapldocument.PublishedDocumentNameCollisionException;
+import io.sapl.server.ce.model.sapldocument.SaplDocument;
+import io.sapl.server.ce.model.sapldocument.SaplDocumentService;
+
+/**
+ * Makes decisions with the embedded PDP wrapped by the
+ * {@link DecisionCachingConfiguration}, while documents, variables and the
+ * combining algorithm are published like by the server.
+ */
+class DecisionCacheTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static ConfigurableApplicationContext context;
+    private static PolicyDecisionPoint            pdp;
+    private static PDPConfigurationPublisher      configurationPublisher;
+    private static SimpleMeterRegistry            meterRegistry;
+
+    @BeforeAll
+    static void startPdp() throws Exception {
+        context                = new SpringApplicationBuilder(EmbeddedPdp.class).web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.datasource.url=jdbc:h2:mem:decisions-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa", "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=update", "--io.sapl.server.accesscontrol.admin-username=admin",
+                        "--io.sapl.server.decisionCaching.enabled=true");
+        pdp                    = context.getBean(PolicyDecisionPoint.class);
+        configurationPublisher = context.getBean(PDPConfigurationPublisher.class);
+        meterRegistry          = context.getBean(SimpleMeterRegistry.class);
+
+        configurationPublisher.publishCombiningAlgorithm(PolicyDocumentCombiningAlgorithm.DENY_OVERRIDES);
+        configurationPublisher.publishVariables(List.of(threshold("1")));
+        publish("policy \"read\" permit action == \"read\"");
+        publish("policy \"time\" permit action == \"time\" where <time.now> != undefined;");
+        publish("policy \"threshold\" permit action == \"threshold\" where threshold == 1;");
+        publish("policy \"conflict permit\" permit action == \"conflict\"");
+        publish("policy \"conflict deny\" deny action == \"conflict\"");
+    }
+
+    @AfterAll
+    static void stopPdp() {
+        context.close();
+    }
+
+    @Test
+    void decisionWithoutAttributesIsCached() {
+        var subscription = AuthorizationSubscription.of("alice", "read", "document");
+        var hits         = count("hit");
+
+        assertThat(pdp).isInstanceOf(CachingPolicyDecisionPoint.class);
+        assertThat(decide(subscription)).isEqualTo(Decision.PERMIT);
+        assertThat(decide(subscription)).isEqualTo(Decision.PERMIT);
+        assertThat(count("hit")).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void decisionEvaluatingAttributeIsNotCached() {
+        var subscription = AuthorizationSubscription.of("alice", "time", "document");
+        var hits         = count("hit");
+        var uncacheable  = count("uncacheable");
+
+        assertThat(decide(subscription)).isEqualTo(Decision.PERMIT);
+        assertThat(decide(subscription)).isEqualTo(Decision.PERMIT);
+        assertThat(count("hit")).isEqualTo(hits);
+        assertThat(count("uncacheable")).isEqualTo(uncacheable + 2);
+    }
+
+    @Test
+    void publishedDocumentIsAppliedToNextDecision() throws Exception {
+        var subscription = AuthorizationSubscription.of("alice", "write", "document");
+        assertCachedDecision(subscription, Decision.NOT_APPLICABLE);
+
+        publish("policy \"write\" permit action == \"write\"");
+
+        assertThat(decide(subscription)).isEqualTo(Decision.PERMIT);
+    }
+
+    @Test
+    void changedVariableIsAppliedToNextDecision() {
+        var subscription = AuthorizationSubscription.of("alice", "threshold", "document");
+        assertCachedDecision(subscription, Decision.PERMIT);
+
+        configurationPublisher.publishVariablesUpdate(VariablesUpdateEvent.publish(threshold("2")));
+        try {
+            assertThat(decide(subscription)).isEqualTo(Decision.NOT_APPLICABLE);
+        } finally {
+            configurationPublisher.publishVariablesUpdate(VariablesUpdateEvent.publish(threshold("1")));
+        }
+    }
+
+    @Test
+    void changedCombiningAlgorithmIsAppliedToNextDecision() {
+        var subscription = AuthorizationSubscription.of("alice", "conflict", "document");
+        assertCachedDecision(subscription, Decision.DENY);
+
+        configurationPublisher.publishCombiningAlgorithm(PolicyDocumentCombiningAlgorithm.PERMIT_OVERRIDES);
+        try {
+            assertThat(decide(subscription)).isEqualTo(Decision.PERMIT);
+        } finally {
+            configurationPublisher.publishCombiningAlgorithm(PolicyDocumentCombiningAlgorithm.DENY_OVERRIDES);
+        }
+    }
+
+    private static void assertCachedDecision(AuthorizationSubscription subscription, Decision expected) {
+        var hits = count("hit");
+        assertThat(decide(subscription)).isEqualTo(expected);
+        assertThat(decide(subscription)).isEqualTo(expected);
+        assertThat(count("hit")).isEqualTo(hits + 1);
+    }
+
+    private static Decision decide(AuthorizationSubscription subscription) {
+        return pdp.decideOnce(subscription).map(AuthorizationDecision::getDecision).block(TIMEOUT);
+    }
+
+    private static double count(String result) {
+        return meterRegistry.counter("sapl.pdp.decisions.cache", "result", result).count();
+    }
+
+    private static Variable threshold(String jsonValue) {
+        return new Variable().setName("threshold").setJsonValue(jsonValue);
+    }
+
+    private static void publish(String policy) throws PublishedDocumentNameCollisionException {
+        var documentService = context.getBean(SaplDocumentService.class);
+        var document        = documentService.createDefault();
+        var version         = documentService.createVersion(document.getId(), policy);
+        documentService.publishPolicyVersion(document.getId(), version.getVersionNumber());
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class })
+    @Import({ EmbeddedPdpAutoConfigurations.class, DecisionCachingConfiguration.class, DecisionCache.class,
+            SharedDecisionStreams.class, DecisionBatching.class, CEVariablesAndCombinatorSource.class,
+            SaplDocumentService.class, ParsedDocumentCache.class, ConfigurationChangeLog.class })
+    @EntityScan(basePackageClasses = { SaplDocument.class, ConfigurationChange.class })
+    @EnableJpaRepositories(basePackageClasses = { SaplDocument.class, ConfigurationChange.class })
+    static class EmbeddedPdp {
+
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+
+        @Bean
+        SimpleMeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    /**
+     * Imports the auto-configurations creating the embedded PDP, which the server
+     * relies on, but none of the other auto-configurations on the class path.
+     */
+    static class EmbeddedPdpAutoConfigurations extends AutoConfigurationImportSelector {
+
+        @Override
+        protected AnnotationAttributes getAttributes(AnnotationMetadata metadata) {
+            return new AnnotationAttributes();
+        }
+
+        @Override
+        protected List<String> getCandidateConfigurations(AnnotationMetadata metadata,
+                AnnotationAttributes attributes) {
+            return super.getCandidateConfigurations(metadata, attributes).stream()
+                    .filter(candidate -> candidate.startsWith("io.sapl.spring.pdp.embedded.")).toList();
+        }
+
+        @Override
+        protected Set<String> getExclusions(AnnotationMetadata metadata, AnnotationAttributes attributes) {
+            return Set.of();
+        }
+    }
+}
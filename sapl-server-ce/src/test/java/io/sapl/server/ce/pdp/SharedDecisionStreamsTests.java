@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.pdp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+class SharedDecisionStreamsTests {
+
+    private static final int SUBSCRIBERS = 10;
+
+    private final AtomicInteger upstreamSubscriptions = new AtomicInteger();
+    private final AtomicBoolean upstreamCancelled     = new AtomicBoolean();
+    private SimpleMeterRegistry                        meterRegistry;
+    private SharedDecisionStreams                      sharedDecisionStreams;
+    private Sinks.Many<AuthorizationDecision>          decisions;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry         = new SimpleMeterRegistry();
+        sharedDecisionStreams = new SharedDecisionStreams(true, new ObjectMapper(), meterRegistry);
+        decisions             = Sinks.many().multicast().directBestEffort();
+    }
+
+    @Test
+    void equalSubscriptionsShareOneEvaluation() {
+        var received    = new ArrayList<List<AuthorizationDecision>>();
+        var subscribers = new ArrayList<Disposable>();
+        for (var i = 0; i < SUBSCRIBERS; i++) {
+            var decisionsOfSubscriber = new ArrayList<AuthorizationDecision>();
+            received.add(decisionsOfSubscriber);
+            subscribers.add(decide().subscribe(decisionsOfSubscriber::add));
+        }
+
+        decisions.tryEmitNext(AuthorizationDecision.PERMIT);
+
+        assertThat(upstreamSubscriptions.get()).isEqualTo(1);
+        assertThat(received).allSatisfy(list -> assertThat(list).containsExactly(AuthorizationDecision.PERMIT));
+        assertThat(activeStreams()).isEqualTo(1.0D);
+        assertThat(meterRegistry.counter("sapl.pdp.decisions.streams", "result", "created").count())
+                .isEqualTo(1.0D);
+        assertThat(meterRegistry.counter("sapl.pdp.decisions.streams", "result", "joined").count())
+                .isEqualTo(SUBSCRIBERS - 1.0D);
+        subscribers.forEach(Disposable::dispose);
+    }
+
+    @Test
+    void lateSubscriberReceivesLatestDecision() {
+        var first = decide().subscribe();
+        decisions.tryEmitNext(AuthorizationDecision.PERMIT);
+        decisions.tryEmitNext(AuthorizationDecision.DENY);
+
+        var late       = new ArrayList<AuthorizationDecision>();
+        var subscriber = decide().subscribe(late::add);
+
+        assertThat(late).containsExactly(AuthorizationDecision.DENY);
+        assertThat(upstreamSubscriptions.get()).isEqualTo(1);
+        first.dispose();
+        subscriber.dispose();
+    }
+
+    @Test
+    void evaluationIsCancelledAfterLastSubscriberLeft() {
+        var subscribers = new ArrayList<Disposable>();
+        for (var i = 0; i < SUBSCRIBERS; i++) {
+            subscribers.add(decide().subscribe());
+        }
+
+        subscribers.subList(1, SUBSCRIBERS).forEach(Disposable::dispose);
+        assertThat(upstreamCancelled).isFalse();
+        assertThat(activeStreams()).isEqualTo(1.0D);
+
+        subscribers.get(0).dispose();
+        assertThat(upstreamCancelled).isTrue();
+        assertThat(activeStreams()).isZero();
+
+        var restarted = decide().subscribe();
+        assertThat(upstreamSubscriptions.get()).isEqualTo(2);
+        restarted.dispose();
+    }
+
+    private Flux<AuthorizationDecision> decide() {
+        return sharedDecisionStreams.decide(AuthorizationSubscription.of("willi", "read", "book"),
+                subscription -> decisions.asFlux().doOnSubscribe(s -> upstreamSubscriptions.incrementAndGet())
+                        .doOnCancel(() -> upstreamCancelled.set(true)));
+    }
+
+    private double activeStreams() {
+        return meterRegistry.get("sapl.pdp.decisions.streams.active").gauge().value();
+    }
+}
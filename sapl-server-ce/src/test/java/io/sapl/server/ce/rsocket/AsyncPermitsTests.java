@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.exceptions.RejectedException;
+import reactor.core.Disposable;
+
+class AsyncPermitsTests {
+
+    private final AtomicInteger queued   = new AtomicInteger();
+    private final Counter       rejected = new SimpleMeterRegistry().counter("rejected");
+
+    @Test
+    void releasedPermitIsHandedOverToWaitingRequest() {
+        var permits = new AsyncPermits(1, 1, "full", queued, rejected);
+        permits.acquire().block();
+
+        var waiter = subscribe(permits);
+        assertThat(waiter.get()).isNull();
+        assertThat(queued.get()).isEqualTo(1);
+
+        permits.release().block();
+        assertThat(waiter.get()).isSameAs(permits);
+        assertThat(queued.get()).isZero();
+
+        // the permit is still used by the former waiter
+        var overtaking = subscribe(permits);
+        assertThat(overtaking.get()).isNull();
+    }
+
+    @Test
+    void requestIsRejectedIfQueueIsFull() {
+        var permits = new AsyncPermits(1, 1, "full", queued, rejected);
+        permits.acquire().block();
+        subscribe(permits);
+
+        var error = new AtomicReference<Throwable>();
+        permits.acquire().subscribe(p -> {}, error::set);
+
+        assertThat(error.get()).isInstanceOf(RejectedException.class);
+        assertThat(rejected.count()).isEqualTo(1.0D);
+    }
+
+    @Test
+    void queueLimitIsSharedByAllPermits() {
+        var connection = new AsyncPermits(1, 1, "full", queued, rejected);
+        var client     = new AsyncPermits(1, 1, "full", queued, rejected);
+        connection.acquire().block();
+        client.acquire().block();
+        subscribe(connection);
+
+        var error = new AtomicReference<Throwable>();
+        client.acquire().subscribe(p -> {}, error::set);
+
+        assertThat(error.get()).isInstanceOf(RejectedException.class);
+        assertThat(queued.get()).isEqualTo(1);
+    }
+
+    @Test
+    void cancelledWaiterDoesNotKeepPermit() {
+        var permits  = new AsyncPermits(1, 2, "full", queued, rejected);
+        var acquired = new AtomicReference<AsyncPermits>();
+        permits.acquire().block();
+
+        Disposable cancelled = permits.acquire().subscribe(acquired::set);
+        var        waiter    = subscribe(permits);
+        cancelled.dispose();
+        assertThat(queued.get()).isEqualTo(1);
+
+        permits.release().block();
+        assertThat(acquired.get()).isNull();
+        assertThat(waiter.get()).isSameAs(permits);
+
+        permits.release().block();
+        assertThat(permits.acquire().block()).isSameAs(permits);
+    }
+
+    private static AtomicReference<AsyncPermits> subscribe(AsyncPermits permits) {
+        var acquired = new AtomicReference<AsyncPermits>();
+        permits.acquire().subscribe(acquired::set);
+        return acquired;
+    }
+}
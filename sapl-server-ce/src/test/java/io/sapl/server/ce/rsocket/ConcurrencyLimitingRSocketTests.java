@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.rsocket.Payload;
+import io.rsocket.RSocket;
+import io.rsocket.exceptions.RejectedException;
+import io.rsocket.util.ByteBufPayload;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class ConcurrencyLimitingRSocketTests {
+
+    private RSocket limited;
+
+    @BeforeEach
+    void setUp() {
+        var limits = new RSocketConcurrencyLimits(true, 1, 10, 1, 10, 1, new SimpleMeterRegistry());
+        limited = limits.limit(new RSocket() {
+            @Override
+            public Mono<Payload> requestResponse(Payload payload) {
+                payload.release();
+                return Mono.never();
+            }
+
+            @Override
+            public Flux<Payload> requestStream(Payload payload) {
+                payload.release();
+                return Flux.never();
+            }
+
+            @Override
+            public Flux<Payload> requestChannel(Publisher<Payload> payloads) {
+                return Flux.never();
+            }
+        });
+    }
+
+    @Test
+    void payloadOfCallCancelledWhileWaitingIsReleased() {
+        var active  = limited.requestResponse(ByteBufPayload.create("first")).subscribe();
+        var waiting = ByteBufPayload.create("waiting");
+
+        limited.requestResponse(waiting).subscribe().dispose();
+
+        assertThat(waiting.refCnt()).isZero();
+        active.dispose();
+    }
+
+    @Test
+    void payloadOfRejectedCallIsReleased() {
+        var active   = limited.requestResponse(ByteBufPayload.create("first")).subscribe();
+        var waiting  = limited.requestResponse(ByteBufPayload.create("waiting")).subscribe();
+        var rejected = ByteBufPayload.create("rejected");
+        var error    = new AtomicReference<Throwable>();
+
+        limited.requestResponse(rejected).subscribe(null, error::set);
+
+        assertThat(error.get()).isInstanceOf(RejectedException.class);
+        assertThat(rejected.refCnt()).isZero();
+        waiting.dispose();
+        active.dispose();
+    }
+
+    @Test
+    void payloadOfRejectedStreamIsReleased() {
+        var active   = limited.requestStream(ByteBufPayload.create("first")).subscribe();
+        var rejected = ByteBufPayload.create("rejected");
+        var error    = new AtomicReference<Throwable>();
+
+        limited.requestStream(rejected).subscribe(null, error::set);
+
+        assertThat(error.get()).isInstanceOf(RejectedException.class);
+        assertThat(rejected.refCnt()).isZero();
+        active.dispose();
+    }
+
+    @Test
+    void payloadsOfRejectedChannelAreCancelled() {
+        var active    = limited.requestChannel(Flux.never()).subscribe();
+        var cancelled = new AtomicReference<Boolean>(false);
+        var error     = new AtomicReference<Throwable>();
+
+        limited.requestChannel(Flux.<Payload>never().doOnCancel(() -> cancelled.set(true))).subscribe(null,
+                error::set);
+
+        assertThat(error.get()).isInstanceOf(RejectedException.class);
+        assertThat(cancelled.get()).isTrue();
+        active.dispose();
+    }
+
+    @Test
+    void handedOverPayloadIsNotReleasedTwice() {
+        var payload = ByteBufPayload.create("payload").retain();
+
+        limited.requestResponse(payload).subscribe().dispose();
+
+        assertThat(payload.refCnt()).isEqualTo(1);
+        payload.release();
+    }
+}
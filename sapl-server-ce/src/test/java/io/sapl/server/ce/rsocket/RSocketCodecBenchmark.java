@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.rsocket;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.codec.Encoder;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import io.netty.buffer.PooledByteBufAllocator;
+import io.sapl.api.pdp.AuthorizationDecision;
+import io.sapl.api.pdp.AuthorizationSubscription;
+
+/**
+ * Compares the time and allocations of the direct RSocket codecs with the
+ * Jackson codecs of Spring, both writing to and reading from pooled buffers.
+ */
+@Fork(2)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RSocketCodecBenchmark {
+
+    private static final ResolvableType         DECISION_TYPE     = ResolvableType
+            .forClass(AuthorizationDecision.class);
+    private static final ResolvableType         SUBSCRIPTION_TYPE = ResolvableType
+            .forClass(AuthorizationSubscription.class);
+    private static final Map<String, Object>    NO_HINTS          = Map.of();
+    private static final NettyDataBufferFactory BUFFER_FACTORY    = new NettyDataBufferFactory(
+            PooledByteBufAllocator.DEFAULT);
+
+    private Encoder<Object>       directEncoder;
+    private Encoder<Object>       jacksonEncoder;
+    private Decoder<Object>       directDecoder;
+    private Decoder<Object>       jacksonDecoder;
+    private AuthorizationDecision plainDecision;
+    private AuthorizationDecision decisionWithObligation;
+    private byte[]                subscription;
+
+    @Setup
+    public void setUp() throws Exception {
+        var mapper = new ObjectMapper();
+        directEncoder  = new DecisionEncoder(mapper);
+        jacksonEncoder = new Jackson2JsonEncoder(mapper);
+        directDecoder  = new SubscriptionDecoder(mapper);
+        jacksonDecoder = new Jackson2JsonDecoder(mapper);
+
+        var obligations = JsonNodeFactory.instance.arrayNode();
+        obligations.addObject().put("type", "logAccess").put("message", "willi has read the book");
+        plainDecision          = AuthorizationDecision.PERMIT;
+        decisionWithObligation = AuthorizationDecision.PERMIT.withObligations(obligations);
+        subscription           = mapper.writeValueAsBytes(AuthorizationSubscription.of("willi", "read",
+                JsonNodeFactory.instance.objectNode().put("type", "book").put("id", 4711)));
+    }
+
+    @Benchmark
+    public int encodePlainDecision() {
+        return encode(directEncoder, plainDecision);
+    }
+
+    @Benchmark
+    public int encodePlainDecisionWithJackson() {
+        return encode(jacksonEncoder, plainDecision);
+    }
+
+    @Benchmark
+    public int encodeDecisionWithObligation() {
+        return encode(directEncoder, decisionWithObligation);
+    }
+
+    @Benchmark
+    public int encodeDecisionWithObligationWithJackson() {
+        return encode(jacksonEncoder, decisionWithObligation);
+    }
+
+    @Benchmark
+    public Object decodeSubscription() {
+        return decode(directDecoder);
+    }
+
+    @Benchmark
+    public Object decodeSubscriptionWithJackson() {
+        return decode(jacksonDecoder);
+    }
+
+    private static int encode(Encoder<Object> encoder, AuthorizationDecision decision) {
+        var buffer = encoder.encodeValue(decision, BUFFER_FACTORY, DECISION_TYPE, MimeTypeUtils.APPLICATION_JSON,
+                NO_HINTS);
+        var size   = buffer.readableByteCount();
+        DataBufferUtils.release(buffer);
+        return size;
+    }
+
+    private Object decode(Decoder<Object> decoder) {
+        var buffer = BUFFER_FACTORY.allocateBuffer(subscription.length).write(subscription);
+        return decoder.decode(buffer, SUBSCRIPTION_TYPE, MimeTypeUtils.APPLICATION_JSON, NO_HINTS);
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.apikey;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.MimeType;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.rsocket.metadata.CompositeMetadata;
+import io.rsocket.metadata.CompositeMetadataCodec;
+import io.rsocket.metadata.WellKnownMimeType;
+
+/**
+ * Compares the parsing of API keys and RSocket metadata with the
+ * implementations before it was optimized, which split the API key and created
+ * a {@link MimeType} and {@link CompositeMetadata} entries for every payload.
+ * Run with the benchmark profile, which adds the GC profiler for the allocated
+ * bytes per operation.
+ */
+@Fork(2)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApiKeyParsingBenchmark {
+
+    private String  apiKey;
+    private ByteBuf metadata;
+
+    @Setup
+    public void setUp() {
+        apiKey   = ApiKeyService.SAPL_TOKEN_PREFIX + "client_t0pS3cr3t-4p1K3y-w1th-256-r4nd0m-b1ts-xYz";
+        metadata = metadata(apiKey);
+        if (!"client".equals(ApiKeyService.getClientKey(apiKey))
+                || !baselineClientKey(apiKey).equals(ApiKeyService.getClientKey(apiKey))) {
+            throw new IllegalStateException("client keys differ");
+        }
+        if (!apiKey.equals(ApiKeyPayloadExchangeAuthenticationConverterService.findApiKey(metadata))
+                || !apiKey.equals(baselineFindApiKey(metadata))) {
+            throw new IllegalStateException("API keys differ");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        metadata.release();
+    }
+
+    @Benchmark
+    public String clientKey() {
+        return ApiKeyService.getClientKey(apiKey);
+    }
+
+    @Benchmark
+    public String clientKeyBaseline() {
+        return baselineClientKey(apiKey);
+    }
+
+    @Benchmark
+    public String findApiKey() {
+        return ApiKeyPayloadExchangeAuthenticationConverterService.findApiKey(metadata);
+    }
+
+    @Benchmark
+    public String findApiKeyBaseline() {
+        return baselineFindApiKey(metadata);
+    }
+
+    /**
+     * The extraction of the client key in ApiKeyService.checkApiKey before it was
+     * optimized.
+     */
+    private static String baselineClientKey(String apiKey) {
+        if (apiKey.startsWith(ApiKeyService.SAPL_TOKEN_PREFIX)) {
+            return apiKey.split("_")[1];
+        }
+        return null;
+    }
+
+    /**
+     * The lookup of the API key in
+     * ApiKeyPayloadExchangeAuthenticationConverterService.convert before it was
+     * optimized.
+     */
+    private static String baselineFindApiKey(ByteBuf metadata) {
+        var apiKeyMimeTypeValue = String.valueOf(MimeType.valueOf(ApiKeyService.RSOCKET_METADATA_MIME_TPYE));
+        var compositeMetadata   = new CompositeMetadata(metadata, false);
+        for (CompositeMetadata.Entry entry : compositeMetadata) {
+            if (apiKeyMimeTypeValue.equals(entry.getMimeType())) {
+                return entry.getContent().toString(StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return composite metadata with a route followed by the API key, as sent
+     *         by the SAPL RSocket PEP
+     */
+    private static ByteBuf metadata(String apiKey) {
+        var allocator = ByteBufAllocator.DEFAULT;
+        var composite = allocator.compositeBuffer();
+        var route     = Unpooled.buffer().writeByte(6).writeBytes("decide".getBytes(StandardCharsets.US_ASCII));
+        CompositeMetadataCodec.encodeAndAddMetadata(composite, allocator, WellKnownMimeType.MESSAGE_RSOCKET_ROUTING,
+                route);
+        CompositeMetadataCodec.encodeAndAddMetadata(composite, allocator, ApiKeyService.RSOCKET_METADATA_MIME_TPYE,
+                Unpooled.copiedBuffer(apiKey, StandardCharsets.UTF_8));
+        var metadata = Unpooled.copiedBuffer(composite);
+        composite.release();
+        return metadata;
+    }
+}
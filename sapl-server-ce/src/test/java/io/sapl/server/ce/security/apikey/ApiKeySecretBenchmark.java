@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.apikey;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.argon2.Argon2PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Compares the verification of API keys stored as HMAC-SHA256 with the
+ * verification of API keys stored with Argon2.
+ */
+@Fork(2)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ApiKeySecretBenchmark {
+
+    private ApiKeySecretEncoder encoder;
+    private String              apiKey;
+    private String              argon2Encoded;
+    private String              hmacEncoded;
+
+    @Setup
+    public void setUp() {
+        apiKey  = ApiKeyService.SAPL_TOKEN_PREFIX + "client_" + randomBase64();
+        encoder = new ApiKeySecretEncoder(Argon2PasswordEncoder.defaultsForSpringSecurity_v5_8());
+        ReflectionTestUtils.setField(encoder, "pepper", randomBase64());
+        encoder.validateSettings();
+
+        argon2Encoded = encoder.encode(apiKey);
+        ReflectionTestUtils.setField(encoder, "hmacEnabled", true);
+        hmacEncoded = encoder.encode(apiKey);
+        if (!encoder.matches(apiKey, argon2Encoded) || !encoder.matches(apiKey, hmacEncoded)) {
+            throw new IllegalStateException("API key not verified");
+        }
+    }
+
+    @Benchmark
+    public boolean verifyArgon2() {
+        return encoder.matches(apiKey, argon2Encoded);
+    }
+
+    @Benchmark
+    public boolean verifyHmac() {
+        return encoder.matches(apiKey, hmacEncoded);
+    }
+
+    private static String randomBase64() {
+        var random = new byte[32];
+        new SecureRandom().nextBytes(random);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(random).replace('_', '-');
+    }
+}
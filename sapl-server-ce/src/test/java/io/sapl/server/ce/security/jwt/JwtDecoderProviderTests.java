@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.jwt;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sapl.server.ce.security.AuthenticationScheduler;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+/**
+ * Discovers the metadata of a {@link StubIssuer} in the background.
+ */
+class JwtDecoderProviderTests {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(15);
+
+    private final SimpleMeterRegistry     meterRegistry           = new SimpleMeterRegistry();
+    private final AuthenticationScheduler authenticationScheduler = new AuthenticationScheduler(1, 10,
+            meterRegistry);
+    private StubIssuer                    issuer;
+    private JwtDecoderProvider            provider;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) {
+            provider.destroy();
+        }
+        if (issuer != null) {
+            issuer.close();
+        }
+        authenticationScheduler.destroy();
+    }
+
+    @Test
+    void tokensAreRejectedUntilUnavailableIssuerIsDiscovered() throws Exception {
+        issuer   = new StubIssuer("");
+        provider = newProvider(null);
+
+        var decoder = assertTimeoutPreemptively(Duration.ofSeconds(1), provider::jwtDecoder);
+        var token   = issuer.token(Instant.now().plusSeconds(60));
+        assertThatThrownBy(() -> decoder.decode(token)).isInstanceOf(BadJwtException.class);
+
+        issuer.start();
+        assertThat(decodeWhenDiscovered(decoder, token).getSubject()).isEqualTo("pep");
+    }
+
+    @Test
+    void metadataAccordingToRfc8414IsUsedIfOpenIdConfigurationIsMissing() throws Exception {
+        issuer = new StubIssuer("/realms/sapl");
+        issuer.setMetadataPath(StubIssuer.OAUTH_METADATA_PATH + "/realms/sapl");
+        issuer.start();
+        provider = newProvider(null);
+
+        var token = issuer.token(Instant.now().plusSeconds(60));
+        assertThat(decodeWhenDiscovered(provider.jwtDecoder(), token).getSubject()).isEqualTo("pep");
+        assertThat(issuer.requestedPaths()).startsWith("/realms/sapl" + StubIssuer.OIDC_METADATA_PATH,
+                StubIssuer.OIDC_METADATA_PATH + "/realms/sapl", StubIssuer.OAUTH_METADATA_PATH + "/realms/sapl");
+    }
+
+    @Test
+    void metadataOfOtherIssuerIsRejected() throws Exception {
+        issuer = new StubIssuer("");
+        issuer.setMetadataIssuer("https://issuer.example.com");
+        issuer.start();
+        provider = newProvider(null);
+
+        var decoder = provider.jwtDecoder();
+        awaitMetadataRequests(6);
+        var token = issuer.token(Instant.now().plusSeconds(60));
+        assertThatThrownBy(() -> decoder.decode(token)).isInstanceOf(BadJwtException.class);
+        assertThat(issuer.jwkSetRequests()).isZero();
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void discoveredMetadataIsCachedReadableOnlyByOwner() throws Exception {
+        issuer = new StubIssuer("");
+        issuer.start();
+        var cacheFile = directory.resolve("issuer.json");
+        provider = newProvider(cacheFile);
+
+        decodeWhenDiscovered(provider.jwtDecoder(), issuer.token(Instant.now().plusSeconds(60)));
+        var cached = Mono.fromCallable(() -> Files.readString(cacheFile))
+                .retryWhen(Retry.fixedDelay(50, Duration.ofMillis(100))).block(TIMEOUT);
+        assertThat(new ObjectMapper().readTree(cached).get("issuer").asText()).isEqualTo(issuer.uri());
+        assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(cacheFile))).isEqualTo("rw-------");
+        try (var files = Files.list(directory)) {
+            assertThat(files).containsExactly(cacheFile);
+        }
+    }
+
+    @Test
+    @DisabledOnOs(OS.WINDOWS)
+    void cachedMetadataIsUsedWhileIssuerIsUnavailable() throws Exception {
+        issuer = new StubIssuer("");
+        issuer.setMetadataAvailable(false);
+        issuer.start();
+        var cacheFile = cacheMetadata("rw-------");
+        provider = newProvider(cacheFile);
+
+        var token = issuer.token(Instant.now().plusSeconds(60));
+        assertThat(provider.jwtDecoder().decode(token).getSubject()).isEqualTo("pep");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "rw-rw----", "rw----rw-" })
+    @DisabledOnOs(OS.WINDOWS)
+    void cachedMetadataWritableByOtherUsersIsIgnored(String permissions) throws Exception {
+        issuer = new StubIssuer("");
+        issuer.setMetadataAvailable(false);
+        issuer.start();
+        var cacheFile = cacheMetadata(permissions);
+        provider = newProvider(cacheFile);
+
+        var decoder = provider.jwtDecoder();
+        awaitMetadataRequests(1);
+        var token = issuer.token(Instant.now().plusSeconds(60));
+        assertThatThrownBy(() -> decoder.decode(token)).isInstanceOf(BadJwtException.class);
+        assertThat(issuer.jwkSetRequests()).isZero();
+    }
+
+    private Path cacheMetadata(String permissions) throws Exception {
+        var cacheFile = directory.resolve("issuer.json");
+        Files.writeString(cacheFile, new ObjectMapper().createObjectNode().put("issuer", issuer.uri())
+                .put("jwks_uri", issuer.uri() + "/jwks").toString());
+        Files.setPosixFilePermissions(cacheFile, PosixFilePermissions.fromString(permissions));
+        return cacheFile;
+    }
+
+    private void awaitMetadataRequests(int requests) {
+        Mono.fromCallable(issuer::metadataRequests).filter(count -> count >= requests)
+                .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(100))).block(TIMEOUT);
+    }
+
+    private JwtDecoderProvider newProvider(Path metadataCacheFile) {
+        var cache = new JwtValidationCache(false, 300, 100, meterRegistry);
+        return new JwtDecoderProvider(cache, authenticationScheduler, issuer.uri(), 300,
+                metadataCacheFile == null ? null : metadataCacheFile.toString(), 1, 1, 2);
+    }
+
+    /**
+     * @return the decoded token as soon as the metadata of the issuer has been
+     *         discovered
+     */
+    static Jwt decodeWhenDiscovered(JwtDecoder decoder, String token) {
+        return Mono.fromCallable(() -> decoder.decode(token)).retryWhen(
+                Retry.fixedDelay(150, Duration.ofMillis(100)).filter(BadJwtException.class::isInstance))
+                .block(TIMEOUT);
+    }
+}
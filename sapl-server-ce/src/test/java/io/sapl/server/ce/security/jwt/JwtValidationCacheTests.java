@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.jwt;
+
+import static io.sapl.server.ce.security.jwt.JwtDecoderProviderTests.decodeWhenDiscovered;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.sapl.server.ce.security.AuthenticationScheduler;
+
+/**
+ * Validates tokens of a {@link StubIssuer} with the decoders of the
+ * {@link JwtDecoderProvider}.
+ */
+class JwtValidationCacheTests {
+
+    private final SimpleMeterRegistry     meterRegistry           = new SimpleMeterRegistry();
+    private final AuthenticationScheduler authenticationScheduler = new AuthenticationScheduler(1, 10,
+            meterRegistry);
+    private StubIssuer                    issuer;
+    private JwtValidationCache            cache;
+    private JwtDecoderProvider            provider;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        issuer = new StubIssuer("");
+        issuer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (provider != null) {
+            provider.destroy();
+        }
+        issuer.close();
+        authenticationScheduler.destroy();
+    }
+
+    @Test
+    void tokenPresentedAgainIsNotVerifiedAgain() throws Exception {
+        var decoder = newDecoder(300);
+        var token   = issuer.token(Instant.now().plusSeconds(60));
+        var jwt     = decodeWhenDiscovered(decoder, token);
+
+        JwtDecoder failingDecoder = t -> {
+            throw new BadJwtException("token verified again");
+        };
+        ReflectionTestUtils.setField(provider, "decoder", failingDecoder);
+
+        assertThat(decoder.decode(token)).isEqualTo(jwt);
+        assertThat(provider.reactiveJwtDecoder().decode(token).block()).isEqualTo(jwt);
+        assertThat(meterRegistry.get("sapl.authentication.jwt.cache").tag("result", "hit").counter().count())
+                .isEqualTo(2.0D);
+        assertThat(issuer.jwkSetRequests()).isEqualTo(1);
+    }
+
+    @Test
+    void tokenExpiresFromCacheAtItsExpirationTime() throws Exception {
+        var decoder   = newDecoder(300);
+        var expiresAt = Instant.now().plusSeconds(3).truncatedTo(ChronoUnit.SECONDS);
+        var token     = issuer.token(expiresAt);
+        decodeWhenDiscovered(decoder, token);
+        assertThat(cache.getValidated(token)).isNotNull();
+
+        Thread.sleep(Duration.between(Instant.now(), expiresAt).plusMillis(100).toMillis());
+
+        assertThat(cache.getValidated(token)).isNull();
+        assertThat(validatedTokens().asMap()).isEmpty();
+    }
+
+    @Test
+    void jwkSetIsFetchedAgainAfterRefreshInterval() throws Exception {
+        var decoder = newDecoder(1);
+        decodeWhenDiscovered(decoder, issuer.token(Instant.now().plusSeconds(60)));
+        decoder.decode(issuer.token(Instant.now().plusSeconds(60)));
+        assertThat(issuer.jwkSetRequests()).isEqualTo(1);
+
+        Thread.sleep(1100L);
+
+        decoder.decode(issuer.token(Instant.now().plusSeconds(60)));
+        assertThat(issuer.jwkSetRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void jwkSetIsFetchedAgainForUnknownKeyId() throws Exception {
+        var decoder = newDecoder(300);
+        decodeWhenDiscovered(decoder, issuer.token(Instant.now().plusSeconds(60)));
+        assertThat(issuer.jwkSetRequests()).isEqualTo(1);
+
+        issuer.rotateKey();
+
+        assertThat(decoder.decode(issuer.token(Instant.now().plusSeconds(60))).getSubject()).isEqualTo("pep");
+        assertThat(issuer.jwkSetRequests()).isEqualTo(2);
+    }
+
+    private JwtDecoder newDecoder(int jwkSetRefreshSeconds) {
+        cache    = new JwtValidationCache(true, 300, 100, meterRegistry);
+        provider = new JwtDecoderProvider(cache, authenticationScheduler, issuer.uri(), jwkSetRefreshSeconds, null,
+                1, 1, 2);
+        return provider.jwtDecoder();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<String, ?> validatedTokens() {
+        var tokens = (Cache<String, ?>) ReflectionTestUtils.getField(cache, "validatedTokens");
+        tokens.cleanUp();
+        return tokens;
+    }
+}
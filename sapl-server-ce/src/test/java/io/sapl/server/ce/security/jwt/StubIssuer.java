@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.jwt;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.Setter;
+
+/**
+ * Issuer of JSON Web Tokens serving its metadata and JSON Web Key Set on a
+ * local port. The issuer is down until it is started.
+ */
+class StubIssuer implements AutoCloseable {
+
+    static final String OIDC_METADATA_PATH  = "/.well-known/openid-configuration";
+    static final String OAUTH_METADATA_PATH = "/.well-known/oauth-authorization-server";
+
+    private static final String JWKS_PATH = "/jwks";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final int           port;
+    private final String        issuerPath;
+    private final List<RSAKey>  keys             = new CopyOnWriteArrayList<>();
+    private final List<String>  requestedPaths   = new CopyOnWriteArrayList<>();
+    private final AtomicInteger jwkSetRequests   = new AtomicInteger();
+    private final AtomicInteger metadataRequests = new AtomicInteger();
+    private HttpServer          server;
+
+    @Setter
+    private volatile String  metadataPath;
+    @Setter
+    private volatile String  metadataIssuer;
+    @Setter
+    private volatile boolean metadataAvailable = true;
+
+    StubIssuer(String issuerPath) throws IOException, JOSEException {
+        try (var socket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            this.port = socket.getLocalPort();
+        }
+        this.issuerPath     = issuerPath;
+        this.metadataPath   = issuerPath + OIDC_METADATA_PATH;
+        this.metadataIssuer = uri();
+        rotateKey();
+    }
+
+    /**
+     * @return the URI of the issuer, i.e., the expected issuer claim
+     */
+    String uri() {
+        return baseUri() + issuerPath;
+    }
+
+    private String baseUri() {
+        return "http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":" + port;
+    }
+
+    synchronized void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Adds a new signing key with an unknown key ID to the key set.
+     */
+    void rotateKey() throws JOSEException {
+        keys.add(new RSAKeyGenerator(2048).keyID(UUID.randomUUID().toString()).generate());
+    }
+
+    /**
+     * @param expiresAt the expiration time
+     * @return a token signed with the most recently added key
+     */
+    String token(Instant expiresAt) throws JOSEException {
+        var key    = keys.get(keys.size() - 1);
+        var claims = new JWTClaimsSet.Builder().issuer(uri()).subject("pep").jwtID(UUID.randomUUID().toString())
+                .expirationTime(Date.from(expiresAt)).build();
+        var jwt    = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    int jwkSetRequests() {
+        return jwkSetRequests.get();
+    }
+
+    int metadataRequests() {
+        return metadataRequests.get();
+    }
+
+    List<String> requestedPaths() {
+        return List.copyOf(requestedPaths);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        var path = exchange.getRequestURI().getPath();
+        requestedPaths.add(path);
+        var status = 404;
+        var body   = "";
+        if (JWKS_PATH.equals(path)) {
+            jwkSetRequests.incrementAndGet();
+            status = 200;
+            body   = new JWKSet(keys.stream().<JWK>map(RSAKey::toPublicJWK).toList()).toString();
+        } else if (path.contains("/.well-known/")) {
+            metadataRequests.incrementAndGet();
+            if (!metadataAvailable) {
+                status = 503;
+            } else if (path.equals(metadataPath)) {
+                status = 200;
+                body   = MAPPER.createObjectNode().put("issuer", metadataIssuer)
+                        .put("jwks_uri", baseUri() + JWKS_PATH).toString();
+            }
+        }
+        var bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (var responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2017-2024 Dominic Heutelbeck (dominic@heutelbeck.com)
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.sapl.server.ce.security.ratelimit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.sapl.server.ce.model.ratelimit.RateLimitBucket;
+import io.sapl.server.ce.model.ratelimit.RateLimitBucketRepository;
+import io.sapl.server.ce.model.ratelimit.RateLimitBucketStore;
+
+/**
+ * Consumes tokens with limiters sharing buckets in an H2 database. Each limiter
+ * acts as one instance.
+ */
+class ClusterRateLimiterTests {
+
+    private static final Duration SECOND = Duration.ofSeconds(1);
+
+    private static ConfigurableApplicationContext context;
+
+    private final AtomicLong          time = new AtomicLong(1_000_000L);
+    private RateLimitBucketRepository repository;
+    private String                    bucketKey;
+
+    @BeforeAll
+    static void startDatabase() {
+        context = new SpringApplicationBuilder(Database.class).web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .run("--spring.datasource.url=jdbc:h2:mem:limiter-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa", "--spring.datasource.password=",
+                        "--spring.jpa.hibernate.ddl-auto=update");
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        context.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        repository = context.getBean(RateLimitBucketRepository.class);
+        bucketKey  = UUID.randomUUID().toString();
+    }
+
+    @Test
+    void prefetchedTokensAreConsumedLocally() {
+        var limiter = newLimiter(5);
+
+        assertThat(limiter.tryConsume(bucketKey, 10, SECOND)).isTrue();
+        assertThat(tokensInDatabase()).isEqualTo(5.0D);
+
+        for (var i = 0; i < 4; i++) {
+            assertThat(limiter.tryConsumeLocally(bucketKey)).isTrue();
+        }
+        assertThat(limiter.tryConsumeLocally(bucketKey)).isNull();
+        assertThat(tokensInDatabase()).isEqualTo(5.0D);
+    }
+
+    @Test
+    void blockedAllowanceRecoversAfterRefillOfOneToken() {
+        // one token per 500 milliseconds
+        var limiter = newLimiter(10);
+        assertThat(limiter.tryConsume(bucketKey, 2, SECOND)).isTrue();
+        assertThat(limiter.tryConsume(bucketKey, 2, SECOND)).isTrue();
+        assertThat(limiter.tryConsume(bucketKey, 2, SECOND)).isFalse();
+
+        time.addAndGet(499);
+        assertThat(limiter.tryConsumeLocally(bucketKey)).isFalse();
+        assertThat(limiter.tryConsume(bucketKey, 2, SECOND)).isFalse();
+
+        time.addAndGet(1);
+        assertThat(limiter.tryConsumeLocally(bucketKey)).isNull();
+        assertThat(limiter.tryConsume(bucketKey, 2, SECOND)).isTrue();
+        assertThat(limiter.tryConsume(bucketKey, 2, SECOND)).isFalse();
+    }
+
+    @Test
+    void instancesSharingBucketDoNotExceedCapacity() {
+        var instances = new ClusterRateLimiter[] { newLimiter(3), newLimiter(3) };
+        var consumed  = 0;
+        for (var i = 0; i < 100; i++) {
+            if (instances[i % 2].tryConsume(bucketKey, 20, SECOND)) {
+                consumed++;
+            }
+        }
+        assertThat(consumed).isEqualTo(20);
+    }
+
+    @Test
+    void bucketWithoutCapacityRejects() {
+        assertThat(newLimiter(10).tryConsume(bucketKey, 0, SECOND)).isFalse();
+        assertThat(repository.findById(bucketKey)).isEmpty();
+    }
+
+    private double tokensInDatabase() {
+        return repository.findById(bucketKey).orElseThrow().getTokens();
+    }
+
+    private ClusterRateLimiter newLimiter(long prefetch) {
+        LongSupplier clock = time::get;
+        var          store = new RateLimitBucketStore(repository, context.getBean(TransactionTemplate.class));
+        ReflectionTestUtils.setField(store, "clock", clock);
+        var limiter = new ClusterRateLimiter(store, prefetch, 60_000L, 1000L);
+        ReflectionTestUtils.setField(limiter, "clock", clock);
+        return limiter;
+    }
+
+    @Configuration
+    @ImportAutoConfiguration({ DataSourceAutoConfiguration.class, HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class })
+    @EntityScan(basePackageClasses = RateLimitBucket.class)
+    @EnableJpaRepositories(basePackageClasses = RateLimitBucket.class)
+    static class Database {
+    }
+}